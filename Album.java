@@ -3,22 +3,91 @@
  *                                                        *
  * Author: Zubaidah Alqaisi                               *
  *                                                        *
- * Private members: albumName, singerName, musicType      *
+ * Private members: entryId, albumName, singerName,       *
+ *                  musicType, details                    *
  *                                                        *
- * Public members: getAlbumName(), getSingerName(),       *
- *                  getMusicType(), Album() constructor   *
+ * Public members: getEntryId(), getAlbumName(),          *
+ *                  getSingerName(), getMusicType(),      *
+ *                  getRank(), getReleaseDate(),          *
+ *                  getPrice(), getCurrency(),            *
+ *                  getImageUrls(), getKey(), sameAs(),   *
+ *                  Album() constructor, Field, Details,  *
+ *                  BASIC_FIELDS, ALL_FIELDS              *
+ *                                                        *
+ * Protected members: Album() constructor for views       *
  *                                                        *
  * Purpose: A class to hold all of the information about  *
  *          an album.                                     *
  *********************************************************/
 
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
 public class Album {
 
     // creating instance variables for the Album class
+    private String entryId;
     private String albumName;
     private String singerName;
     private String musicType;
 
+    // the rest of the feed entry, null when none of it was asked for
+    private Details details;
+
+    // the values of a feed entry that can be asked for when the feed is read
+    public enum Field { ID, NAME, ARTIST, CATEGORY, RANK, RELEASE_DATE, PRICE, IMAGES }
+
+    // the values shown in the table, reading them creates no Details
+    public static final Set<Field> BASIC_FIELDS =
+            Collections.unmodifiableSet(EnumSet.of(Field.ID, Field.NAME, Field.ARTIST, Field.CATEGORY));
+
+    // everything the feed has about an album
+    public static final Set<Field> ALL_FIELDS = Collections.unmodifiableSet(EnumSet.allOf(Field.class));
+
+    /******************************************************
+     * Class: Details                                     *
+     * Purpose: The values of a feed entry beyond the name*
+     *          artist and category. Each one is empty    *
+     *          when it was not asked for or the entry did*
+     *          not have it.                              *
+     */
+
+    public static class Details {
+
+        final int rank;
+        final String releaseDate;
+        final String price;
+        final String currency;
+        final List<String> imageUrls;
+
+        /**************************************************
+         * Function: Details()                            *
+         * Purpose: constructor                           *
+         * @param rank place in the feed starting at 1, or*
+         *        0 if unknown                            *
+         * @param releaseDate as written in the feed, like*
+         *        2018-03-02T00:00:00-07:00               *
+         * @param price the amount, like 9.99             *
+         * @param currency like USD                       *
+         * @param imageUrls smallest image first, or null *
+         * Return: none                                   *
+         */
+
+        public Details(int rank, String releaseDate, String price, String currency, List<String> imageUrls)
+        {
+            this.rank = rank;
+            this.releaseDate = releaseDate;
+            this.price = price;
+            this.currency = currency;
+            this.imageUrls = imageUrls == null ? Collections.<String>emptyList()
+                    : Collections.unmodifiableList(imageUrls);
+        }
+
+    } // end of Details class
+
     /******************************************************
      * Function: Album()                                  *
      * Purpose: this is the constructor of the Album class*
@@ -30,13 +99,59 @@ public class Album {
 
     public Album (String title, String artist, String category)
     {
+        this(null, title, artist, category);
+
+    } // end of Album()
+
+    /******************************************************
+     * Function: Album()                                  *
+     * Purpose: constructor for an album read from a feed *
+     *          entry, which also has the atom entry id   *
+     * @param id                                          *
+     * @param title                                       *
+     * @param artist                                      *
+     * @param category                                    *
+     * Return: none                                       *
+     */
+
+    public Album (String id, String title, String artist, String category)
+    {
+        this(id, title, artist, category, null);
+
+    } // end of Album()
+
+    /******************************************************
+     * Function: Album()                                  *
+     * Purpose: constructor for an album read with more   *
+     *          than the basic fields                     *
+     * @param id                                          *
+     * @param title                                       *
+     * @param artist                                      *
+     * @param category                                    *
+     * @param details the other values, or null           *
+     * Return: none                                       *
+     */
+
+    public Album (String id, String title, String artist, String category, Details details)
+    {
+        entryId = id;
         albumName = title;
         singerName = artist;
         musicType = category;
+        this.details = details;
 
     } // end of Album()
 
+    // constructor for subclasses that read their values from somewhere else, like AlbumStore.AlbumView
+    protected Album()
+    {
+    }
+
     // getters for the Album class data members
+    public String getEntryId() {
+        return entryId;
+    }
+
     public String getAlbumName() {
         return albumName;
     }
@@ -49,4 +164,64 @@ public class Album {
         return musicType;
     }
 
+    // getters for the details, empty values when they were not read
+    public Details getDetails() {
+        return details;
+    }
+
+    public int getRank() {
+        return details == null ? 0 : details.rank;
+    }
+
+    public String getReleaseDate() {
+        return details == null ? null : details.releaseDate;
+    }
+
+    public String getPrice() {
+        return details == null ? null : details.price;
+    }
+
+    public String getCurrency() {
+        return details == null ? null : details.currency;
+    }
+
+    public List<String> getImageUrls() {
+        return details == null ? Collections.<String>emptyList() : details.imageUrls;
+    }
+
+    /******************************************************
+     * Function: getKey()                                 *
+     * Purpose: The value that identifies the album across*
+     *          downloads: the entry id, or the title and *
+     *          artist when the feed had no id.           *
+     * Argument: none                                     *
+     * Return: the key                                    *
+     */
+
+    public String getKey()
+    {
+        String id = getEntryId();
+        return id != null ? id : getAlbumName() + "\u0000" + getSingerName();
+
+    } // end of getKey()
+
+    /******************************************************
+     * Function: sameAs()                                 *
+     * Purpose: Tests if another album has the same key   *
+     *          and the same values. Only the values shown *
+     *          in the table are compared, the rank is a   *
+     *          move and not a change.                     *
+     * @param other                                       *
+     * Return: true if nothing differs                    *
+     */
+
+    public boolean sameAs(Album other)
+    {
+        return getKey().equals(other.getKey())
+                && Objects.equals(getAlbumName(), other.getAlbumName())
+                && Objects.equals(getSingerName(), other.getSingerName())
+                && Objects.equals(getMusicType(), other.getMusicType());
+
+    } // end of sameAs()
+
 }// end of the class
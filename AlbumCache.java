@@ -0,0 +1,295 @@
+/**********************************************************
+ * Class: AlbumCache                                      *
+ *                                                        *
+ * Author: Zubaidah Alqaisi                               *
+ *                                                        *
+ * Private members: ttlMillis, refreshAheadMillis,        *
+ *                  maxEntries, entries, refresher,       *
+ *                  downloader, hits, misses, evictions,  *
+ *                  refreshes                             *
+ *                                                        *
+ * Public members: AlbumCache(), getShared(), get(),      *
+ *                 put(), getHits(), getMisses(),         *
+ *                 getEvictions(), getRefreshes()         *
+ *                                                        *
+ * Purpose: Keeps the parsed albums of every feed in      *
+ *          memory for a while, so going back to a feed   *
+ *          that was already downloaded shows it at once. *
+ *          Entries expire after a time to live, the least*
+ *          recently used ones are dropped when there are *
+ *          too many, and feeds that are still being used *
+ *          are downloaded again in the background shortly*
+ *          before they expire. One thread only keeps the *
+ *          time and finds those feeds; the downloads run *
+ *          on a small pool of their own, so a slow feed  *
+ *          does not hold up the next sweep.              *
+ *********************************************************/
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class AlbumCache {
+
+    // settings of the shared cache, can be changed with -Dalbum.cacheTtlMs and -Dalbum.cacheMaxEntries
+    private static final long CACHE_TTL_MS = Long.getLong("album.cacheTtlMs", TimeUnit.MINUTES.toMillis(10));
+    private static final int CACHE_MAX_ENTRIES = Integer.getInteger("album.cacheMaxEntries", 64);
+
+    // feeds refreshed at the same time, can be changed with -Dalbum.refreshThreads
+    private static final int REFRESH_THREADS = Integer.getInteger("album.refreshThreads", 2);
+
+    // the cache every panel uses
+    private static AlbumCache shared;
+
+    // how long an entry lives, when it is refreshed, and how many entries are kept
+    private final long ttlMillis;
+    private final long refreshAheadMillis;
+    private final int maxEntries;
+
+    // the cached feeds, least recently used first
+    private final LinkedHashMap<FeedKey, CachedFeed> entries = new LinkedHashMap<FeedKey, CachedFeed>(16, 0.75f, true);
+
+    // the thread that finds the feeds to refresh, and the threads that download them
+    private final ScheduledExecutorService refresher;
+    private final ExecutorService downloader;
+
+    // statistics about the cache
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+
+    /******************************************************
+     * Class: CachedFeed                                  *
+     * Purpose: The albums of one feed, when they were    *
+     *          loaded and when they were last asked for. *
+     */
+
+    private static class CachedFeed {
+
+        private final List<Album> albums;
+        private final long loadedAt;
+        private volatile long lastAccess;
+        private boolean refreshing;
+
+        CachedFeed(List<Album> albums, long loadedAt)
+        {
+            this.albums = albums;
+            this.loadedAt = loadedAt;
+            lastAccess = loadedAt;
+        }
+
+    } // end of CachedFeed class
+
+    /*******************************************************
+     * Function: AlbumCache()                              *
+     * Purpose: constructor: creates the cache and starts  *
+     *          the refresh-ahead thread, which looks at   *
+     *          the entries ten times per time to live, and*
+     *          the pool that downloads the feeds it finds.*
+     * @param ttlMillis                                    *
+     * @param maxEntries                                   *
+     * Return: none                                        *
+     */
+
+    public AlbumCache(long ttlMillis, int maxEntries)
+    {
+        this.ttlMillis = ttlMillis;
+        this.maxEntries = maxEntries;
+        refreshAheadMillis = ttlMillis * 4 / 5;     // refresh once 80% of the time to live has passed
+
+        refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "album-cache-refresh");
+            thread.setDaemon(true);   // never keep the application alive
+            return thread;
+        });
+        downloader = Executors.newFixedThreadPool(Math.max(1, REFRESH_THREADS), runnable -> {
+            Thread thread = new Thread(runnable, "album-cache-download");
+            thread.setDaemon(true);   // never keep the application alive
+            return thread;
+        });
+
+        long period = Math.max(1, ttlMillis / 10);
+        refresher.scheduleWithFixedDelay(this::refreshHotEntries, period, period, TimeUnit.MILLISECONDS);
+
+    } // end of AlbumCache()
+
+    /*******************************************************
+     * Function: getShared()                               *
+     * Purpose: Returns the cache shared by all panels,    *
+     *          creating it the first time.                *
+     * Argument: none                                      *
+     * Return: the shared cache                            *
+     */
+
+    public static synchronized AlbumCache getShared()
+    {
+        if (shared == null)
+        {
+            shared = new AlbumCache(CACHE_TTL_MS, CACHE_MAX_ENTRIES);
+        }
+        return shared;
+
+    } // end of getShared()
+
+    /*******************************************************
+     * Function: get()                                     *
+     * Purpose: Returns the albums of a feed if they are   *
+     *          cached and have not expired.               *
+     * @param key                                          *
+     * Return: the albums, or null on a miss               *
+     */
+
+    public synchronized List<Album> get(FeedKey key)
+    {
+        CachedFeed feed = entries.get(key);
+        long now = System.currentTimeMillis();
+
+        // an expired entry is a miss
+        if (feed == null || now - feed.loadedAt >= ttlMillis)
+        {
+            if (feed != null)
+            {
+                entries.remove(key);
+                evictions.incrementAndGet();
+            }
+            misses.incrementAndGet();
+            return null;
+        }
+
+        hits.incrementAndGet();
+        feed.lastAccess = now;
+        return feed.albums;
+
+    } // end of get()
+
+    /*******************************************************
+     * Function: put()                                     *
+     * Purpose: Stores the albums of a feed, dropping the  *
+     *          least recently used feed if there are too  *
+     *          many.                                      *
+     * @param key                                          *
+     * @param albums                                       *
+     * Return: none void                                   *
+     */
+
+    public synchronized void put(FeedKey key, List<Album> albums)
+    {
+        entries.put(key, new CachedFeed(Collections.unmodifiableList(albums), System.currentTimeMillis()));
+
+        Iterator<Map.Entry<FeedKey, CachedFeed>> oldest = entries.entrySet().iterator();
+        while (entries.size() > maxEntries && oldest.hasNext())
+        {
+            oldest.next();
+            oldest.remove();
+            evictions.incrementAndGet();
+        }
+
+    } // end of put()
+
+    /*******************************************************
+     * Function: refreshHotEntries()                       *
+     * Purpose: Hands every feed that was used within its  *
+     *          time to live and is close to expiring to   *
+     *          the download pool. Feeds nobody looks at   *
+     *          are left to expire.                        *
+     * Argument: none                                      *
+     * Return: none void                                   *
+     */
+
+    private void refreshHotEntries()
+    {
+        long now = System.currentTimeMillis();
+
+        synchronized (this)
+        {
+            for (Map.Entry<FeedKey, CachedFeed> entry : entries.entrySet())
+            {
+                CachedFeed feed = entry.getValue();
+                boolean old = now - feed.loadedAt >= refreshAheadMillis;
+                boolean hot = feed.lastAccess > feed.loadedAt;
+
+                if (old && hot && !feed.refreshing)
+                {
+                    feed.refreshing = true;
+                    FeedKey key = entry.getKey();
+                    downloader.execute(() -> refresh(key));
+                }
+            }
+        }
+
+    } // end of refreshHotEntries()
+
+    /*******************************************************
+     * Function: refresh()                                 *
+     * Purpose: Downloads one feed again and replaces its  *
+     *          entry, on a thread of the download pool. On*
+     *          failure the old entry is kept until it     *
+     *          expires.                                   *
+     * @param key                                          *
+     * Return: none void                                   *
+     */
+
+    private void refresh(FeedKey key)
+    {
+        try {
+            List<Album> albums = FeedReader.read(key.toUrl(), key.getLimitCount(), album -> { });
+            if (!albums.isEmpty())
+            {
+                put(key, albums);
+                refreshes.incrementAndGet();
+                return;
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch (Exception e)
+        {
+            // the cached albums stay until they expire, the next sweep tries again
+        }
+
+        // let the next sweep try again
+        synchronized (this)
+        {
+            CachedFeed feed = entries.get(key);
+            if (feed != null)
+            {
+                feed.refreshing = false;
+            }
+        }
+
+    } // end of refresh()
+
+    // getters for the statistics
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public long getRefreshes() {
+        return refreshes.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d hits, %d misses, %d evictions, %d refreshed ahead",
+                getHits(), getMisses(), getEvictions(), getRefreshes());
+    }
+
+} // end of the AlbumCache class
@@ -0,0 +1,77 @@
+/**********************************************************
+ * Class: AlbumChange                                     *
+ *                                                        *
+ * Author: Zubaidah Alqaisi                               *
+ *                                                        *
+ * Private members: kind, feed, rank, oldRank, album      *
+ *                                                        *
+ * Public members: AlbumChange(), getKind(), getFeed(),   *
+ *                 getRank(), getOldRank(), getAlbum()    *
+ *                                                        *
+ * Purpose: One difference between the last download of a*
+ *          feed and the new one. Only these changes are  *
+ *          published to the panel, so a refresh where    *
+ *          little changed touches only a few rows.       *
+ *********************************************************/
+
+public class AlbumChange {
+
+    /******************************************************
+     * Enum: Kind                                         *
+     * Purpose: ADDED - a new album at rank               *
+     *          MOVED - a known album now at rank         *
+     *          UPDATED - same album and rank, new values *
+     *          REMOVED - an album no longer in the feed  *
+     *          RESIZED - the feed now has rank albums    *
+     *          FINISHED - every change of the feed has   *
+     *                     been sent, the rows are whole  *
+     */
+
+    public enum Kind { ADDED, MOVED, UPDATED, REMOVED, RESIZED, FINISHED }
+
+    // the class data members
+    private final Kind kind;
+    private final FeedKey feed;
+    private final int rank;
+    private final int oldRank;
+    private final Album album;
+
+    // class constructor, ranks start at 0 and -1 means no rank
+    public AlbumChange(Kind kind, FeedKey feed, int rank, int oldRank, Album album)
+    {
+        this.kind = kind;
+        this.feed = feed;
+        this.rank = rank;
+        this.oldRank = oldRank;
+        this.album = album;
+
+    } // end of AlbumChange()
+
+    // getters for the AlbumChange class data members
+    public Kind getKind() {
+        return kind;
+    }
+
+    public FeedKey getFeed() {
+        return feed;
+    }
+
+    public int getRank() {
+        return rank;
+    }
+
+    public int getOldRank() {
+        return oldRank;
+    }
+
+    public Album getAlbum() {
+        return album;
+    }
+
+    @Override
+    public String toString() {
+        return kind + " " + feed + " #" + rank + (oldRank >= 0 ? " (was #" + oldRank + ")" : "")
+                + (album != null ? " " + album.getAlbumName() : "");
+    }
+
+} // end of the AlbumChange class
@@ -0,0 +1,508 @@
+/**********************************************************
+ * Class: AlbumHandler                                    *
+ *                                                        *
+ * Author: Zubaidah Alqaisi                               *
+ *                                                        *
+ * Private members: TAGS, lookupKey, skipDepth, inEntry,  *
+ *                  id, title, artist, category,          *
+ *                  releaseDate, image, idText, titleText,*
+ *                  artistText, releaseText, imageText,   *
+ *                  sId, sTitle, sArtist, sCategory,      *
+ *                  sReleaseDate, sPrice, sCurrency,      *
+ *                  sImages, fields, albums, sink, limit. *
+ *                                                        *
+ * Public members: AlbumHandler(), startElement(),        *
+ *                 endElement(), characters().            *
+ *                                                        *
+ * Purpose: This is a subclass of DefaultHandler. It      *
+ *          handles information from the parser and hands *
+ *          every album it finds to a sink, so the same   *
+ *          handler serves the single download task and   *
+ *          the multi-feed fetch engine. The parser must  *
+ *          be namespace aware: each element is looked up *
+ *          once by namespace URI and local name, and the *
+ *          elements it does not know are skipped together*
+ *          with everything inside them, which is also how*
+ *          the fields the caller did not ask for are left*
+ *          out. Once the limit of albums is reached the  *
+ *          parse is stopped with a LimitReachedException,*
+ *          and an interrupted thread stops at the next   *
+ *          entry.                                        *
+ *********************************************************/
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+public class AlbumHandler extends DefaultHandler {
+
+    // namespaces used by the iTunes atom feed
+    static final String ATOM_NS = "http://www.w3.org/2005/Atom";
+    static final String ITUNES_NS = "http://itunes.apple.com/rss";
+
+    // the elements the handler reacts to
+    private enum Tag { FEED, ENTRY, ID, NAME, ARTIST, CATEGORY, RELEASE_DATE, PRICE, IMAGE }
+
+    // dispatch table from namespace URI + local name to the element, built once
+    private static final Map<TagKey, Tag> TAGS = new HashMap<TagKey, Tag>();
+
+    static {
+        TAGS.put(new TagKey(ATOM_NS, "feed"), Tag.FEED);
+        TAGS.put(new TagKey(ATOM_NS, "entry"), Tag.ENTRY);
+        TAGS.put(new TagKey(ATOM_NS, "id"), Tag.ID);
+        TAGS.put(new TagKey(ATOM_NS, "category"), Tag.CATEGORY);
+        TAGS.put(new TagKey(ITUNES_NS, "name"), Tag.NAME);
+        TAGS.put(new TagKey(ITUNES_NS, "artist"), Tag.ARTIST);
+        TAGS.put(new TagKey(ITUNES_NS, "releaseDate"), Tag.RELEASE_DATE);
+        TAGS.put(new TagKey(ITUNES_NS, "price"), Tag.PRICE);
+        TAGS.put(new TagKey(ITUNES_NS, "image"), Tag.IMAGE);
+    }
+
+    // key reused for every lookup so no object is created per element
+    private TagKey lookupKey = new TagKey(null, null);
+
+    // how deep the parser is inside an element that is being skipped, 0 when nothing is skipped
+    private int skipDepth = 0;
+
+    // craeting boolean data members
+    private boolean inEntry = false;
+    private boolean id = false;
+    private boolean title = false;
+    private boolean artist = false;
+    private boolean category = false;
+    private boolean releaseDate = false;
+    private boolean image = false;
+
+    // reusable buffers the text between the tags is collected in, turned into strings at the closing tag
+    private TextBuffer idText = new TextBuffer();
+    private TextBuffer titleText = new TextBuffer();
+    private TextBuffer artistText = new TextBuffer();
+    private TextBuffer releaseText = new TextBuffer();
+    private TextBuffer imageText = new TextBuffer();
+
+    // data members of the AlbumHandler class
+    private String sId;
+    private String sTitle;
+    private String sArtist;
+    private String sCategory;
+    private String sReleaseDate;
+    private String sPrice;
+    private String sCurrency;
+    private List<String> sImages;
+
+    // the values of the entry to read, the others are skipped
+    private final EnumSet<Album.Field> fields;
+    private final boolean details;
+
+    // every album found so far, and where each one is published to
+    private List<Album> albums;
+    private Consumer<Album> sink;
+
+    // most albums to read, 0 for all of them
+    private int limit;
+
+    /******************************************************
+     * Class: LimitReachedException                       *
+     * Purpose: Thrown out of the parser once enough      *
+     *          albums are found, the only way to stop a  *
+     *          SAX parse early. It has no stack trace    *
+     *          since it is not an error.                 *
+     */
+
+    public static class LimitReachedException extends SAXException {
+
+        private static final long serialVersionUID = 1L;
+
+        public LimitReachedException(int limit) {
+            super("stopped after " + limit + " albums");
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+
+    } // end of LimitReachedException class
+
+    /*******************************************************
+     * Function: AlbumHandler()                            *
+     * Purpose: constructor: the handler adds each album it*
+     *          finds to the list and passes it to the sink*
+     * @param albums                                       *
+     * @param sink                                         *
+     * Return: none                                        *
+     */
+
+    public AlbumHandler(List<Album> albums, Consumer<Album> sink)
+    {
+        this(albums, sink, 0);
+    }
+
+    /*******************************************************
+     * Function: AlbumHandler()                            *
+     * Purpose: constructor: like above, but the parse is  *
+     *          stopped once limit albums are found.       *
+     * @param albums                                       *
+     * @param sink                                         *
+     * @param limit most albums to read, 0 for all of them *
+     * Return: none                                        *
+     */
+
+    public AlbumHandler(List<Album> albums, Consumer<Album> sink, int limit)
+    {
+        this(albums, sink, limit, Album.BASIC_FIELDS);
+    }
+
+    /*******************************************************
+     * Function: AlbumHandler()                            *
+     * Purpose: constructor: like above, but only the given*
+     *          values of each entry are read.             *
+     * @param albums                                       *
+     * @param sink                                         *
+     * @param limit most albums to read, 0 for all of them *
+     * @param fields the values to read                    *
+     * Return: none                                        *
+     */
+
+    public AlbumHandler(List<Album> albums, Consumer<Album> sink, int limit, Set<Album.Field> fields)
+    {
+        this.albums = albums;
+        this.sink = sink;
+        this.limit = limit;
+        this.fields = fields.isEmpty() ? EnumSet.noneOf(Album.Field.class) : EnumSet.copyOf(fields);
+
+        // the basic fields fit in the Album itself, anything more needs a Details
+        EnumSet<Album.Field> extra = EnumSet.copyOf(this.fields);
+        extra.removeAll(Album.BASIC_FIELDS);
+        details = !extra.isEmpty();
+    }
+
+    /*******************************************************
+     * Function: startElement()                            *
+     * Purpose: handle various events that occur as the XML*
+     *         is parsed like open tags.                   *
+     * @param uri                                          *
+     * @param localName                                    *
+     * @param qName                                        *
+     * @param attributes                                   *
+     * @throws SAXException                                *
+     * Return: none void                                   *
+     */
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+
+        // inside an element that is skipped, only count the depth
+        if (skipDepth > 0)
+        {
+            skipDepth++;
+            return;
+        }
+
+        Tag tag = lookup(uri, localName);
+
+        // an element the handler does not know: skip it and everything inside it
+        if (tag == null)
+        {
+            skipDepth = 1;
+            return;
+        }
+
+        // a value the caller did not ask for is skipped like an unknown element
+        if (!wanted(tag))
+        {
+            skipDepth = 1;
+            return;
+        }
+
+        switch (tag)
+        {
+            case ID:
+                // only the id of an entry is kept, the id of the feed is skipped
+                if (!inEntry)
+                {
+                    skipDepth = 1;
+                    return;
+                }
+                id = true;
+                idText.clear();
+                break;
+
+            case NAME:
+                title = true;     // set the title boolean equal to true means found it and between the two tags
+                titleText.clear();   // empty the buffer to start a new title
+                break;
+
+            case ARTIST:
+                artist = true; // set the boolean data member to true
+                artistText.clear();  // empty the buffer to start a new artist
+                break;
+
+            case ENTRY:
+                inEntry = true;
+                category = fields.contains(Album.Field.CATEGORY);    // it is found so set the boolean to true
+                sId = null;         // an entry without an id is matched by title and artist
+                sTitle = null;
+                sArtist = null;
+                sCategory = null;
+                sReleaseDate = null;
+                sPrice = null;
+                sCurrency = null;
+                sImages = null;
+                break;
+
+            case CATEGORY:
+                if (category)
+                {
+                    sCategory = attributes.getValue("label");   // get the label tag in the category tag only
+                    category = false;     // only the first category of the entry is used
+                }
+                break;
+
+            case RELEASE_DATE:
+                releaseDate = true;
+                releaseText.clear();
+                break;
+
+            case PRICE:
+                // the amount and currency are attributes, the text is only the formatted price
+                sPrice = attributes.getValue("amount");
+                sCurrency = attributes.getValue("currency");
+                break;
+
+            case IMAGE:
+                image = true;
+                imageText.clear();
+                break;
+
+            default:
+                break;
+        }
+    }// end of startElement()
+
+    /*******************************************************
+     * Function: endElement()                              *
+     * Purpose: handle various events that occur as the XML*
+     *          is parsed like closing tags.               *
+     * @param uri                                          *
+     * @param localName                                    *
+     * @param qName                                        *
+     * @throws SAXException                                *
+     * Return: none void                                   *
+     */
+
+    @Override
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+
+        // closing a skipped element, no lookup needed
+        if (skipDepth > 0)
+        {
+            skipDepth--;
+            return;
+        }
+
+        Tag tag = lookup(uri, localName);
+        if (tag == null)
+        {
+            return;
+        }
+
+        switch (tag)
+        {
+            case ID:
+                id = false;
+                sId = idText.toString().trim();
+                break;
+
+            case NAME:
+                title = false;   // set the boolean to false
+                sTitle = titleText.toString();
+                break;
+
+            case ARTIST:
+                artist = false;          // set the boolean to false
+                sArtist = artistText.toString();
+                break;
+
+            case RELEASE_DATE:
+                releaseDate = false;
+                sReleaseDate = releaseText.toString().trim();
+                break;
+
+            case IMAGE:
+                image = false;
+                if (sImages == null)
+                {
+                    sImages = new ArrayList<String>(3);     // the feed has three sizes of every image
+                }
+                sImages.add(imageText.toString().trim());
+                break;
+
+            case ENTRY:
+                inEntry = false;
+
+                // the rank is the place of the entry in the feed
+                Album.Details more = !details ? null : new Album.Details(
+                        fields.contains(Album.Field.RANK) ? albums.size() + 1 : 0,
+                        sReleaseDate, sPrice, sCurrency, sImages);
+
+                // a cancelled download stops here, even if the rest of the feed is already buffered
+                if (Thread.currentThread().isInterrupted())
+                {
+                    throw new SAXException("download cancelled");
+                }
+
+                Album album = new Album(sId, sTitle, sArtist, sCategory, more); // create instance of the Album class and pass the string data member to it
+                albums.add(album);
+                sink.accept(album);    // publish the album
+
+                // enough albums: stop the parser instead of reading the rest of the feed
+                if (limit > 0 && albums.size() >= limit)
+                {
+                    throw new LimitReachedException(limit);
+                }
+                break;
+
+            default:
+                break;
+        }
+
+    } // end of endElement ()
+
+
+    /******************************************************
+     * Function: characters()                             *
+     * Purpose: To read the characters from the parser.   *
+     * @param ch                                          *
+     * @param start                                       *
+     * @param length                                      *
+     * @throws SAXException                               *
+     * Return: none void                                  *
+     */
+
+    @Override
+    public void characters(char[] ch, int start, int length) throws SAXException {
+
+        // if it is in between the tags, copy the current characters found into the buffer
+        if (id)
+            idText.append(ch, start, length);
+
+        // if it is in between the tags, copy the current characters found into the buffer
+        if (title)
+            titleText.append(ch, start, length);
+
+        // if it is in between the tags, copy the current characters found into the buffer
+        if (artist)
+            artistText.append(ch, start, length);
+
+        if (releaseDate)
+            releaseText.append(ch, start, length);
+
+        if (image)
+            imageText.append(ch, start, length);
+
+    } // end of characters()
+
+    // tests if the value an element holds was asked for
+    private boolean wanted(Tag tag)
+    {
+        switch (tag)
+        {
+            case ID:           return fields.contains(Album.Field.ID);
+            case NAME:         return fields.contains(Album.Field.NAME);
+            case ARTIST:       return fields.contains(Album.Field.ARTIST);
+            case CATEGORY:     return fields.contains(Album.Field.CATEGORY);
+            case RELEASE_DATE: return fields.contains(Album.Field.RELEASE_DATE);
+            case PRICE:        return fields.contains(Album.Field.PRICE);
+            case IMAGE:        return fields.contains(Album.Field.IMAGES);
+            default:           return true;
+        }
+    }
+
+    // find the element in the dispatch table with one hash lookup
+    private Tag lookup(String uri, String localName)
+    {
+        lookupKey.set(uri, localName);
+        return TAGS.get(lookupKey);
+    }
+
+    /******************************************************
+     * Class: TagKey                                      *
+     * Purpose: Namespace URI and local name of an element*
+     *          used as the key of the dispatch table.    *
+     */
+
+    private static final class TagKey {
+
+        private String uri;
+        private String localName;
+        private int hash;
+
+        TagKey(String uri, String localName) {
+            set(uri, localName);
+        }
+
+        void set(String uri, String localName) {
+            this.uri = uri;
+            this.localName = localName;
+            hash = uri == null ? 0 : 31 * uri.hashCode() + localName.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof TagKey)) return false;
+            TagKey other = (TagKey) o;
+            return hash == other.hash && localName.equals(other.localName) && uri.equals(other.uri);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+    } // end of TagKey class
+
+    /******************************************************
+     * Class: TextBuffer                                  *
+     * Purpose: A growable char array that is cleared and *
+     *          reused for every element, so the chunks   *
+     *          the parser delivers are copied without    *
+     *          creating a string for each one.           *
+     */
+
+    static class TextBuffer {
+
+        private char[] chars = new char[64];
+        private int length;
+
+        // forget the text but keep the array
+        void clear() {
+            length = 0;
+        }
+
+        // copy a chunk of characters to the end of the buffer, doubling the array when it is full
+        void append(char[] ch, int start, int count) {
+            if (length + count > chars.length)
+            {
+                chars = Arrays.copyOf(chars, Math.max(chars.length * 2, length + count));
+            }
+            System.arraycopy(ch, start, chars, length, count);
+            length += count;
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, 0, length);
+        }
+
+    } // end of TextBuffer class
+
+} // end of the class AlbumHandler
@@ -0,0 +1,154 @@
+/**********************************************************
+ * Class: AlbumHandlerBenchmark                           *
+ *                                                        *
+ * Author: Zubaidah Alqaisi                               *
+ *                                                        *
+ * Public members: main()                                 *
+ *                                                        *
+ * Purpose: Measures the bytes allocated per feed entry by*
+ *          the AlbumHandler, next to a handler that still *
+ *          joins the text chunks with string concatenation*
+ *          the way AlbumHandler used to, and next to the *
+ *          AlbumHandler asked for every field. They parse*
+ *          the same generated feed, whose long titles are *
+ *          full of entities so the parser hands them over *
+ *          in many chunks. Run it with:                  *
+ *            java AlbumHandlerBenchmark [entries] [rounds]*
+ *********************************************************/
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.helpers.DefaultHandler;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+public class AlbumHandlerBenchmark {
+
+    public static void main(String[] args) throws Exception
+    {
+        int entries = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        byte[] feed = buildFeed(entries);
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        SAXParser parser = factory.newSAXParser();
+
+        // parse the feed with both handlers, the first rounds only warm up the JIT
+        for (int round = 0; round < rounds; round++)
+        {
+            boolean report = round >= rounds / 2;
+
+            long legacy = allocatedBytes(parser, feed, new ConcatHandler());
+            long current = allocatedBytes(parser, feed, new AlbumHandler(new ArrayList<Album>(), album -> { }));
+            long all = allocatedBytes(parser, feed,
+                    new AlbumHandler(new ArrayList<Album>(), album -> { }, 0, Album.ALL_FIELDS));
+
+            if (report)
+            {
+                System.out.printf("concatenation: %7d bytes/entry   buffers: %7d bytes/entry   all fields: %7d bytes/entry%n",
+                        legacy / entries, current / entries, all / entries);
+            }
+        }
+
+    } // end of main()
+
+    // bytes the current thread allocates while parsing the feed once
+    private static long allocatedBytes(SAXParser parser, byte[] feed, DefaultHandler handler) throws Exception
+    {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long id = Thread.currentThread().getId();
+
+        long before = threads.getThreadAllocatedBytes(id);
+        parser.reset();
+        parser.parse(new InputSource(new ByteArrayInputStream(feed)), handler);
+        return threads.getThreadAllocatedBytes(id) - before;
+    }
+
+    // a feed of the given size with long titles and artists
+    private static byte[] buildFeed(int entries)
+    {
+        StringBuilder xml = new StringBuilder();
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        xml.append("<feed xmlns:im=\"http://itunes.apple.com/rss\" xmlns=\"http://www.w3.org/2005/Atom\">\n");
+
+        for (int i = 0; i < entries; i++)
+        {
+            xml.append("<entry><id im:id=\"").append(i).append("\">https://music.apple.com/us/album/").append(i).append("</id>");
+            xml.append("<im:name>");
+            for (int word = 0; word < 40; word++)
+            {
+                xml.append("Song &amp; Dance ").append(word).append(' ');
+            }
+            xml.append("</im:name>");
+            xml.append("<category im:id=\"14\" term=\"Pop\" label=\"Pop\"/>");
+            xml.append("<im:artist>The &quot;Artist&quot; &amp; Friends ").append(i % 50).append("</im:artist>");
+            xml.append("<im:price amount=\"9.99\" currency=\"USD\">$9.99</im:price>");
+            for (int height : new int[] {55, 60, 170})
+            {
+                xml.append("<im:image height=\"").append(height).append("\">https://is1-ssl.mzstatic.com/image/thumb/")
+                        .append(i).append('/').append(height).append("x").append(height).append("bb.png</im:image>");
+            }
+            xml.append("<im:releaseDate label=\"March 2, 2018\">2018-03-02T00:00:00-07:00</im:releaseDate>");
+            xml.append("</entry>\n");
+        }
+
+        xml.append("</feed>\n");
+        return xml.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /******************************************************
+     * Class: ConcatHandler                               *
+     * Purpose: The text handling AlbumHandler had before *
+     *          it used buffers, kept as the baseline.    *
+     */
+
+    private static class ConcatHandler extends DefaultHandler {
+
+        private boolean title;
+        private boolean artist;
+        private String sTitle;
+        private String sArtist;
+        private String sCategory;
+        private final ArrayList<Album> albums = new ArrayList<Album>();
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            if (qName.equalsIgnoreCase("im:name")) {
+                title = true;
+                sTitle = "";
+            }
+            if (qName.equalsIgnoreCase("im:artist")) {
+                artist = true;
+                sArtist = "";
+            }
+            if (qName.equalsIgnoreCase("category")) {
+                sCategory = attributes.getValue("label");
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            if (qName.equalsIgnoreCase("im:name"))
+                title = false;
+            if (qName.equalsIgnoreCase("im:artist"))
+                artist = false;
+            if (qName.equalsIgnoreCase("entry"))
+                albums.add(new Album(sTitle, sArtist, sCategory));
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (title)
+                sTitle = sTitle + new String(ch, start, length);
+            if (artist)
+                sArtist = sArtist + new String(ch, start, length);
+        }
+
+    } // end of ConcatHandler class
+
+} // end of the AlbumHandlerBenchmark class
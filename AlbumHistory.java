@@ -0,0 +1,801 @@
+/**********************************************************
+ * Class: AlbumHistory                                    *
+ *                                                        *
+ * Author: Zubaidah Alqaisi                               *
+ *                                                        *
+ * Private members: HISTORY_DIR, COMPACT_INTERVAL_MS,     *
+ *                  directory, activeFile, active, buffer,*
+ *                  record, activeLength, files, index,   *
+ *                  compactor, compactLock, compactFailure*
+ *                                                        *
+ * Public members: AlbumHistory(), getShared(), append(), *
+ *                 rankHistory(), compact(),              *
+ *                 getCompactFailure(), Entry, main()     *
+ *                                                        *
+ * Purpose: Keeps the rank of every album in every        *
+ *          download, so its chart movement can be looked *
+ *          up later. Records are only ever appended to   *
+ *          active.log through a buffered FileChannel. A  *
+ *          background thread moves them into one segment *
+ *          file per day, sorted by time, and writes an   *
+ *          index file next to each segment; every record *
+ *          is kept. The indexes are kept in memory by    *
+ *          album key, so a rank history reads only the   *
+ *          records of that album.                        *
+ *                                                        *
+ *          A record is: int payload length, int CRC-32 of*
+ *          the payload, then the payload: long time,     *
+ *          feed type, limit and explicit, int rank, and  *
+ *          the album key, title and artist. A record     *
+ *          whose CRC does not match ends the file, which *
+ *          is how a write cut off by a crash is found.   *
+ *********************************************************/
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+public class AlbumHistory {
+
+    // where the shared history is kept and how often it is compacted, can be changed with -Dhistory.dir
+    // and -Dhistory.compactIntervalMs
+    private static final String HISTORY_DIR = System.getProperty("history.dir",
+            System.getProperty("user.home") + File.separator + ".xmldownloader" + File.separator + "history");
+    private static final long COMPACT_INTERVAL_MS = Long.getLong("history.compactIntervalMs", 60L * 60 * 1000);
+
+    // names of the log being appended to and of the log being compacted
+    private static final String ACTIVE = "active.log";
+    private static final String COMPACTING = "compacting.log";
+
+    // first value in every index file, changed when the layout changes
+    private static final int INDEX_VERSION = 1;
+
+    // bytes of the length and CRC in front of every payload
+    private static final int HEADER = 8;
+
+    // the history every download writes to
+    private static AlbumHistory shared;
+
+    // the history folder and the log appended to
+    private final File directory;
+    private final File activeFile;
+    private FileChannel active;
+
+    // appends are collected here and written to the channel in one call
+    private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+
+    // the payload of the record being appended, reused by append() only
+    private ByteBuffer record = ByteBuffer.allocate(1024);
+
+    // length of the active log including the bytes still in the buffer
+    private long activeLength;
+
+    // the files the index points into; a position is the file number in the high
+    // 32 bits and the offset of the record in the low 32 bits
+    private final List<File> files = new ArrayList<File>();
+    private final Map<String, Positions> index = new HashMap<String, Positions>();
+
+    // the thread that compacts the log, and the lock that keeps two compactions apart
+    private final ScheduledExecutorService compactor;
+    private final Object compactLock = new Object();
+
+    // why the last compaction on the thread failed, null if it worked
+    private volatile String compactFailure;
+
+    /******************************************************
+     * Class: Entry                                       *
+     * Purpose: The rank of one album in one download of  *
+     *          a feed.                                   *
+     */
+
+    public static class Entry {
+
+        private final long time;
+        private final FeedKey feed;
+        private final int rank;
+        private final String key;
+        private final String title;
+        private final String artist;
+
+        Entry(long time, FeedKey feed, int rank, String key, String title, String artist)
+        {
+            this.time = time;
+            this.feed = feed;
+            this.rank = rank;
+            this.key = key;
+            this.title = title;
+            this.artist = artist;
+        }
+
+        // getters for the Entry class data members, the rank starts at 1
+        public long getTime() {
+            return time;
+        }
+
+        public FeedKey getFeed() {
+            return feed;
+        }
+
+        public int getRank() {
+            return rank;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public String getArtist() {
+            return artist;
+        }
+
+        @Override
+        public String toString() {
+            return Instant.ofEpochMilli(time) + "  #" + rank + "  " + feed + "  " + title + " - " + artist;
+        }
+
+    } // end of Entry class
+
+    /******************************************************
+     * Class: Positions                                   *
+     * Purpose: A growable list of record positions.      *
+     */
+
+    private static class Positions {
+
+        private long[] values = new long[4];
+        private int size = 0;
+
+        void add(long position) {
+            if (size == values.length)
+            {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = position;
+        }
+
+    } // end of Positions class
+
+    /*******************************************************
+     * Function: AlbumHistory()                            *
+     * Purpose: constructor: opens the history folder,     *
+     *          loads the index of every segment and starts*
+     *          the compaction thread.                     *
+     * @param directory                                    *
+     * @param compactIntervalMs time between compactions,  *
+     *        0 to only compact when compact() is called   *
+     * @throws IOException                                 *
+     * Return: none                                        *
+     */
+
+    public AlbumHistory(File directory, long compactIntervalMs) throws IOException
+    {
+        this.directory = directory;
+        directory.mkdirs();
+        activeFile = new File(directory, ACTIVE);
+
+        // a record cut off by a crash is dropped from the end of the log
+        active = FileChannel.open(activeFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        activeLength = scan(activeFile, (position, entry) -> { });
+        active.truncate(activeLength);
+        active.position(activeLength);
+
+        rebuildIndex();
+
+        compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "album-history-compact");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (compactIntervalMs > 0)
+        {
+            compactor.scheduleWithFixedDelay(() -> {
+                try {
+                    compact();
+                    compactFailure = null;
+                }
+                catch (IOException e)
+                {
+                    compactFailure = "album history not compacted: " + e.getMessage();
+                }
+            }, compactIntervalMs, compactIntervalMs, TimeUnit.MILLISECONDS);
+        }
+
+    } // end of AlbumHistory()
+
+    /*******************************************************
+     * Function: getShared()                               *
+     * Purpose: Returns the history shared by all          *
+     *          downloads, creating it the first time.     *
+     * Argument: none                                      *
+     * @throws IOException                                 *
+     * Return: the shared history                          *
+     */
+
+    public static synchronized AlbumHistory getShared() throws IOException
+    {
+        if (shared == null)
+        {
+            shared = new AlbumHistory(new File(HISTORY_DIR), COMPACT_INTERVAL_MS);
+        }
+        return shared;
+
+    } // end of getShared()
+
+    /*******************************************************
+     * Function: append()                                  *
+     * Purpose: Appends the rank of every album of one     *
+     *          download of a feed, and writes them to the *
+     *          file before returning.                     *
+     * @param feed                                         *
+     * @param time when the feed was downloaded            *
+     * @param albums the albums in rank order              *
+     * @throws IOException                                 *
+     * Return: none void                                   *
+     */
+
+    public synchronized void append(FeedKey feed, long time, List<Album> albums) throws IOException
+    {
+        for (int i = 0; i < albums.size(); i++)
+        {
+            Album album = albums.get(i);
+            record = encode(new Entry(time, feed, i + 1, album.getKey(), album.getAlbumName(), album.getSingerName()),
+                    record);
+
+            // the record goes after the bytes already buffered
+            index(album.getKey(), 0, activeLength);
+            if (buffer.remaining() < HEADER + record.remaining())
+            {
+                flush();
+            }
+            if (buffer.remaining() < HEADER + record.remaining())
+            {
+                // bigger than the buffer, write it on its own
+                ByteBuffer header = ByteBuffer.allocate(HEADER);
+                header.putInt(record.remaining()).putInt(crc(record)).flip();
+                writeFully(header);
+                writeFully(record);
+            }
+            else
+            {
+                buffer.putInt(record.remaining()).putInt(crc(record)).put(record);
+            }
+            activeLength += HEADER + record.limit();
+        }
+        flush();
+
+    } // end of append()
+
+    /*******************************************************
+     * Function: rankHistory()                             *
+     * Purpose: Finds every rank an album had, in every    *
+     *          feed, reading only the records the index   *
+     *          lists for it.                              *
+     * @param albumKey the key of the album, see           *
+     *        Album.getKey()                               *
+     * @throws IOException                                 *
+     * Return: the entries, oldest first                   *
+     */
+
+    public synchronized List<Entry> rankHistory(String albumKey) throws IOException
+    {
+        List<Entry> entries = new ArrayList<Entry>();
+        Positions positions = index.get(albumKey);
+        if (positions == null)
+        {
+            return entries;
+        }
+        flush();
+
+        // one channel per file the album is in
+        Map<Integer, FileChannel> channels = new HashMap<Integer, FileChannel>();
+        try {
+            for (int i = 0; i < positions.size; i++)
+            {
+                int file = (int) (positions.values[i] >>> 32);
+                long offset = positions.values[i] & 0xFFFFFFFFL;
+
+                FileChannel channel = channels.get(file);
+                if (channel == null)
+                {
+                    channel = FileChannel.open(files.get(file).toPath(), StandardOpenOption.READ);
+                    channels.put(file, channel);
+                }
+
+                Entry entry = read(channel, offset);
+                if (entry != null && entry.getKey().equals(albumKey))
+                {
+                    entries.add(entry);
+                }
+            }
+        }
+        finally {
+            for (FileChannel channel : channels.values())
+            {
+                channel.close();
+            }
+        }
+
+        entries.sort(Comparator.comparingLong(Entry::getTime));
+        return entries;
+
+    } // end of rankHistory()
+
+    // why the last compaction on the background thread failed, null if it worked
+    public String getCompactFailure() {
+        return compactFailure;
+    }
+
+    /*******************************************************
+     * Function: compact()                                 *
+     * Purpose: Moves the records of the active log into   *
+     *          one segment per day, in time order. The    *
+     *          active log is renamed first, so appends go *
+     *          on while the segments are written; a crash *
+     *          leaves compacting.log, which the next      *
+     *          compaction finishes.                       *
+     * Argument: none                                      *
+     * @throws IOException                                 *
+     * Return: none void                                   *
+     */
+
+    public void compact() throws IOException
+    {
+        synchronized (compactLock)
+        {
+            File rotated = new File(directory, COMPACTING);
+
+            // start a new active log
+            synchronized (this)
+            {
+                if (!rotated.exists())
+                {
+                    flush();
+                    if (activeLength == 0)
+                    {
+                        return;
+                    }
+                    active.close();
+                    Files.move(activeFile.toPath(), rotated.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                    active = FileChannel.open(activeFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                    activeLength = 0;
+                    rebuildIndex();
+                }
+            }
+
+            // group the records by day
+            TreeMap<LocalDate, List<Entry>> days = new TreeMap<LocalDate, List<Entry>>();
+            scan(rotated, (position, entry) -> days.computeIfAbsent(dayOf(entry.getTime()),
+                    day -> new ArrayList<Entry>()).add(entry));
+
+            // write every day next to its old segment, only the moves below block appends
+            Map<File, File> written = new HashMap<File, File>();
+            for (Map.Entry<LocalDate, List<Entry>> day : days.entrySet())
+            {
+                File segment = new File(directory, day.getKey() + ".seg");
+                List<Entry> entries = new ArrayList<Entry>();
+                if (segment.exists())
+                {
+                    scan(segment, (position, entry) -> entries.add(entry));
+                }
+                entries.addAll(day.getValue());
+                written.put(segment, writeSegment(segment, entries));
+            }
+
+            synchronized (this)
+            {
+                for (Map.Entry<File, File> segment : written.entrySet())
+                {
+                    Files.move(segment.getValue().toPath(), segment.getKey().toPath(),
+                            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    indexFile(segment.getKey()).delete();      // the old index is written again below
+                }
+                rotated.delete();
+                rebuildIndex();
+            }
+        }
+
+    } // end of compact()
+
+    // write the records of one day to a temporary file, returns the file
+    private File writeSegment(File segment, List<Entry> entries) throws IOException
+    {
+        entries.sort(Comparator.comparingLong(Entry::getTime));      // stable, so the rank order stays
+
+        File part = File.createTempFile("segment", ".part", directory);
+        ByteBuffer payload = ByteBuffer.allocate(1024);     // its own, append() may run while this writes
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(part))))
+        {
+            for (Entry entry : entries)
+            {
+                payload = encode(entry, payload);
+                out.writeInt(payload.remaining());
+                out.writeInt(crc(payload));
+                out.write(payload.array(), 0, payload.limit());
+            }
+        }
+        return part;
+    }
+
+    // load every index and point it at the files, called with the lock held
+    private void rebuildIndex() throws IOException
+    {
+        files.clear();
+        index.clear();
+
+        // the active log is file 0, its records are indexed while they are appended
+        flush();
+        files.add(activeFile);
+        scan(activeFile, (position, entry) -> index(entry.getKey(), 0, position));
+
+        File rotated = new File(directory, COMPACTING);
+        if (rotated.exists())
+        {
+            int file = files.size();
+            files.add(rotated);
+            scan(rotated, (position, entry) -> index(entry.getKey(), file, position));
+        }
+
+        // the day segments, oldest first
+        File[] segments = directory.listFiles((dir, name) -> name.endsWith(".seg"));
+        if (segments != null)
+        {
+            Arrays.sort(segments);
+            for (File segment : segments)
+            {
+                int file = files.size();
+                files.add(segment);
+                if (!readIndex(segment, file))
+                {
+                    writeIndex(segment, file);
+                }
+            }
+        }
+    }
+
+    // read the index file of a segment, false if it is missing or broken
+    private boolean readIndex(File segment, int file)
+    {
+        File indexFile = indexFile(segment);
+        if (!indexFile.exists())
+        {
+            return false;
+        }
+
+        Map<String, Positions> loaded = new HashMap<String, Positions>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile))))
+        {
+            if (in.readInt() != INDEX_VERSION || in.readLong() != segment.length())
+            {
+                return false;
+            }
+            for (int keys = in.readInt(); keys > 0; keys--)
+            {
+                String key = in.readUTF();
+                Positions positions = loaded.computeIfAbsent(key, k -> new Positions());
+                for (int count = in.readInt(); count > 0; count--)
+                {
+                    positions.add((long) file << 32 | (in.readInt() & 0xFFFFFFFFL));
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            return false;
+        }
+
+        for (Map.Entry<String, Positions> entry : loaded.entrySet())
+        {
+            Positions positions = entry.getValue();
+            for (int i = 0; i < positions.size; i++)
+            {
+                index(entry.getKey(), file, positions.values[i] & 0xFFFFFFFFL);
+            }
+        }
+        return true;
+    }
+
+    // scan a segment, index it and save the index next to it
+    private void writeIndex(File segment, int file) throws IOException
+    {
+        Map<String, Positions> offsets = new HashMap<String, Positions>();
+        scan(segment, (position, entry) -> {
+            index(entry.getKey(), file, position);
+            offsets.computeIfAbsent(entry.getKey(), key -> new Positions()).add(position);
+        });
+
+        File part = File.createTempFile("index", ".part", directory);
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(part))))
+            {
+                out.writeInt(INDEX_VERSION);
+                out.writeLong(segment.length());     // an index that does not fit its segment is not used
+                out.writeInt(offsets.size());
+                for (Map.Entry<String, Positions> entry : offsets.entrySet())
+                {
+                    out.writeUTF(entry.getKey());
+                    out.writeInt(entry.getValue().size);
+                    for (int i = 0; i < entry.getValue().size; i++)
+                    {
+                        out.writeInt((int) entry.getValue().values[i]);
+                    }
+                }
+            }
+            Files.move(part.toPath(), indexFile(segment).toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            part.delete();
+        }
+    }
+
+    // add a record position to the in-memory index
+    private void index(String key, int file, long offset)
+    {
+        index.computeIfAbsent(key, k -> new Positions()).add((long) file << 32 | offset);
+    }
+
+    // the index file that belongs to a segment
+    private static File indexFile(File segment)
+    {
+        String name = segment.getName();
+        return new File(segment.getParentFile(), name.substring(0, name.length() - 4) + ".idx");
+    }
+
+    /*******************************************************
+     * Function: scan()                                    *
+     * Purpose: Reads every record of a file in order.     *
+     * @param file                                         *
+     * @param visitor gets the offset and the entry of     *
+     *        every good record                            *
+     * @throws IOException                                 *
+     * Return: the offset after the last good record       *
+     */
+
+    private static long scan(File file, BiConsumer<Long, Entry> visitor) throws IOException
+    {
+        if (!file.exists())
+        {
+            return 0;
+        }
+
+        long offset = 0;
+        long fileLength = file.length();
+        byte[] payload = new byte[1024];
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024)))
+        {
+            while (true)
+            {
+                int length = in.readInt();
+                int crc = in.readInt();
+                if (length <= 0 || offset + HEADER + length > fileLength)
+                {
+                    break;
+                }
+                if (length > payload.length)
+                {
+                    payload = new byte[length];
+                }
+                in.readFully(payload, 0, length);
+
+                ByteBuffer buffer = ByteBuffer.wrap(payload, 0, length);
+                if (crc(buffer) != crc)
+                {
+                    break;
+                }
+                visitor.accept(offset, decode(buffer));
+                offset += HEADER + length;
+            }
+        }
+        catch (EOFException e)
+        {
+            // the end of the file, or a record that was only partly written
+        }
+        return offset;
+    }
+
+    // read one record at an offset, null if it is broken
+    private static Entry read(FileChannel channel, long offset) throws IOException
+    {
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        if (readFully(channel, header, offset) < HEADER)
+        {
+            return null;
+        }
+        int length = header.getInt(0);
+        int crc = header.getInt(4);
+        if (length <= 0 || offset + HEADER + length > channel.size())
+        {
+            return null;
+        }
+
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        readFully(channel, payload, offset + HEADER);
+        payload.flip();
+        return crc(payload) == crc ? decode(payload) : null;
+    }
+
+    // fill a buffer from a position of a channel, returns the bytes read
+    private static int readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+    {
+        int total = 0;
+        while (buffer.hasRemaining())
+        {
+            int n = channel.read(buffer, position + total);
+            if (n < 0)
+            {
+                break;
+            }
+            total += n;
+        }
+        return total;
+    }
+
+    // write the buffered records to the active log
+    private void flush() throws IOException
+    {
+        buffer.flip();
+        writeFully(buffer);
+        buffer.clear();
+    }
+
+    private void writeFully(ByteBuffer bytes) throws IOException
+    {
+        while (bytes.hasRemaining())
+        {
+            active.write(bytes);
+        }
+    }
+
+    // encode an entry into a buffer, or a bigger one if it does not fit; the one returned is ready to be read
+    private static ByteBuffer encode(Entry entry, ByteBuffer record)
+    {
+        byte[][] strings = {
+                utf8(entry.getFeed().getType()), utf8(entry.getFeed().getLimit()),
+                utf8(entry.getKey()), utf8(entry.getTitle()), utf8(entry.getArtist())};
+
+        int size = 8 + 1 + 4 + 4 * strings.length;
+        for (byte[] string : strings)
+        {
+            size += string == null ? 0 : string.length;
+        }
+        if (size > record.capacity())
+        {
+            record = ByteBuffer.allocate(Math.max(record.capacity() * 2, size));
+        }
+
+        record.clear();
+        record.putLong(entry.getTime());
+        putString(record, strings[0]);
+        putString(record, strings[1]);
+        record.put((byte) (entry.getFeed().isExplicit() ? 1 : 0));
+        record.putInt(entry.getRank());
+        putString(record, strings[2]);
+        putString(record, strings[3]);
+        putString(record, strings[4]);
+        record.flip();
+        return record;
+    }
+
+    // a string is its byte length, -1 for null, and its UTF-8 bytes
+    private static void putString(ByteBuffer record, byte[] bytes)
+    {
+        record.putInt(bytes == null ? -1 : bytes.length);
+        if (bytes != null)
+        {
+            record.put(bytes);
+        }
+    }
+
+    private static byte[] utf8(String value)
+    {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // decode the payload of a record
+    private static Entry decode(ByteBuffer payload)
+    {
+        long time = payload.getLong();
+        String type = getString(payload);
+        String limit = getString(payload);
+        boolean explicit = payload.get() != 0;
+        int rank = payload.getInt();
+        String key = getString(payload);
+        String title = getString(payload);
+        String artist = getString(payload);
+        return new Entry(time, new FeedKey(type, limit, explicit), rank, key, title, artist);
+    }
+
+    private static String getString(ByteBuffer payload)
+    {
+        int length = payload.getInt();
+        if (length < 0)
+        {
+            return null;
+        }
+        String value = new String(payload.array(), payload.arrayOffset() + payload.position(), length,
+                StandardCharsets.UTF_8);
+        payload.position(payload.position() + length);
+        return value;
+    }
+
+    // CRC-32 of the remaining bytes, the buffer position is not changed
+    private static int crc(ByteBuffer bytes)
+    {
+        CRC32 crc = new CRC32();
+        crc.update(bytes.duplicate());
+        return (int) crc.getValue();
+    }
+
+    // the UTC day of a time, the segment its record goes into
+    private static LocalDate dayOf(long time)
+    {
+        return Instant.ofEpochMilli(time).atZone(ZoneOffset.UTC).toLocalDate();
+    }
+
+    /*******************************************************
+     * Function: main()                                    *
+     * Purpose: Prints the rank history of an album:       *
+     *            java AlbumHistory <album key> [compact]  *
+     * @param args                                         *
+     * @throws IOException                                 *
+     * Return: none void                                   *
+     */
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length == 0)
+        {
+            System.out.println("usage: java AlbumHistory <album key> [compact]");
+            return;
+        }
+
+        AlbumHistory history = new AlbumHistory(new File(HISTORY_DIR), 0);
+        if (args.length > 1 && args[1].equals("compact"))
+        {
+            history.compact();
+        }
+
+        long start = System.nanoTime();
+        List<Entry> entries = history.rankHistory(args[0]);
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+
+        for (Entry entry : entries)
+        {
+            System.out.println(entry);
+        }
+        System.out.println(entries.size() + " records in " + micros + " us");
+
+    } // end of main()
+
+} // end of the AlbumHistory class
@@ -0,0 +1,261 @@
+/**********************************************************
+ * Class: AlbumSearchIndex                                *
+ *                                                        *
+ * Author: Zubaidah Alqaisi                               *
+ *                                                        *
+ * Private members: tokens, categories, categoryOf, live  *
+ *                                                        *
+ * Public members: add(), remove(), clear(), search(),    *
+ *                 facets(), size(), tokenize()           *
+ *                                                        *
+ * Purpose: An inverted index over the album name, artist *
+ *          and category. Every word maps to the list of  *
+ *          albums it appears in, and the words are kept  *
+ *          sorted so a prefix finds all words starting   *
+ *          with it. Albums are added one by one as they  *
+ *          are published and removed when their row is   *
+ *          replaced. A query returns a bit set of the    *
+ *          matching albums, and the category counts of a *
+ *          result come from one pass over its bits.      *
+ *********************************************************/
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+public class AlbumSearchIndex {
+
+    // the albums every word appears in
+    private final TreeMap<String, Postings> tokens = new TreeMap<String, Postings>();
+
+    // the category of every album, as an id into the table of categories
+    private StringTable categories = new StringTable();
+    private int[] categoryOf = new int[256];
+
+    // the albums that are still in the index
+    private final BitSet live = new BitSet();
+
+    // a word in more albums than this also keeps its albums as a bit set
+    private static final int DENSE_POSTINGS = 512;
+
+    /******************************************************
+     * Class: Postings                                    *
+     * Purpose: A growable list of album numbers. Common  *
+     *          words also keep a bit set, which a search *
+     *          can OR in one step instead of setting each*
+     *          album on its own.                         *
+     */
+
+    private static class Postings {
+
+        private int[] docs = new int[4];
+        private int size = 0;
+        private BitSet bits;
+
+        void add(int doc) {
+            // the same word twice in one album is stored once
+            if (size > 0 && docs[size - 1] == doc)
+            {
+                return;
+            }
+            if (size == docs.length)
+            {
+                docs = Arrays.copyOf(docs, size * 2);
+            }
+            docs[size++] = doc;
+
+            if (bits != null)
+            {
+                bits.set(doc);
+            }
+            else if (size == DENSE_POSTINGS)
+            {
+                BitSet dense = new BitSet();
+                addTo(dense);
+                bits = dense;
+            }
+        }
+
+        // set the bit of every album in the list
+        void addTo(BitSet matches) {
+            if (bits != null)
+            {
+                matches.or(bits);
+                return;
+            }
+            for (int i = 0; i < size; i++)
+            {
+                matches.set(docs[i]);
+            }
+        }
+
+    } // end of Postings class
+
+    /*******************************************************
+     * Function: add()                                     *
+     * Purpose: Adds an album to the index.                *
+     * @param doc the number of the album, for example its *
+     *        row in an AlbumStore                         *
+     * @param album                                        *
+     * Return: none void                                   *
+     */
+
+    public void add(int doc, Album album)
+    {
+        for (String field : new String[] {album.getAlbumName(), album.getSingerName(), album.getMusicType()})
+        {
+            for (String token : tokenize(field))
+            {
+                tokens.computeIfAbsent(token, key -> new Postings()).add(doc);
+            }
+        }
+
+        if (doc >= categoryOf.length)
+        {
+            categoryOf = Arrays.copyOf(categoryOf, Math.max(categoryOf.length * 2, doc + 1));
+        }
+        categoryOf[doc] = categories.intern(album.getMusicType());
+        live.set(doc);
+
+    } // end of add()
+
+    /*******************************************************
+     * Function: remove()                                  *
+     * Purpose: Takes an album out of the results. Its     *
+     *          number stays in the word lists but is      *
+     *          ignored from now on.                       *
+     * @param doc                                          *
+     * Return: none void                                   *
+     */
+
+    public void remove(int doc)
+    {
+        live.clear(doc);
+
+    } // end of remove()
+
+    // forget every album and every category
+    public void clear()
+    {
+        tokens.clear();
+        live.clear();
+        categories = new StringTable();
+        categoryOf = new int[256];
+    }
+
+    // number of albums in the index
+    public int size() {
+        return live.cardinality();
+    }
+
+    /*******************************************************
+     * Function: search()                                  *
+     * Purpose: Finds the albums that have every word of   *
+     *          the query, each word matched as a prefix,  *
+     *          so "tay sw" finds "Taylor Swift".          *
+     * @param query                                        *
+     * Return: the matching albums, all of them for an     *
+     *         empty query                                 *
+     */
+
+    public BitSet search(String query)
+    {
+        BitSet result = (BitSet) live.clone();
+
+        for (String prefix : tokenize(query))
+        {
+            // every album that has a word starting with the prefix
+            BitSet matches = new BitSet();
+            SortedMap<String, Postings> words = tokens.subMap(prefix, prefix + Character.MAX_VALUE);
+            for (Postings postings : words.values())
+            {
+                postings.addTo(matches);
+            }
+
+            result.and(matches);
+            if (result.isEmpty())
+            {
+                break;
+            }
+        }
+        return result;
+
+    } // end of search()
+
+    /*******************************************************
+     * Function: facets()                                  *
+     * Purpose: Counts the albums of every category in a   *
+     *          search result.                             *
+     * @param matches                                      *
+     * Return: category to count, largest first            *
+     */
+
+    public Map<String, Integer> facets(BitSet matches)
+    {
+        int[] counts = new int[categories.size() + 1];
+        for (int doc = matches.nextSetBit(0); doc >= 0; doc = matches.nextSetBit(doc + 1))
+        {
+            counts[categoryOf[doc] + 1]++;      // slot 0 counts albums without a category
+        }
+
+        // sort the categories by count
+        List<Integer> ids = new ArrayList<Integer>();
+        for (int id = 0; id < categories.size(); id++)
+        {
+            if (counts[id + 1] > 0)
+            {
+                ids.add(id);
+            }
+        }
+        ids.sort((x, y) -> counts[y + 1] - counts[x + 1]);
+
+        Map<String, Integer> facets = new LinkedHashMap<String, Integer>();
+        for (int id : ids)
+        {
+            facets.put(categories.get(id), counts[id + 1]);
+        }
+        return facets;
+
+    } // end of facets()
+
+    /*******************************************************
+     * Function: tokenize()                                *
+     * Purpose: Splits text into lower-case words of       *
+     *          letters and digits.                        *
+     * @param text                                         *
+     * Return: the words                                   *
+     */
+
+    public static List<String> tokenize(String text)
+    {
+        List<String> words = new ArrayList<String>();
+        if (text == null)
+        {
+            return words;
+        }
+
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++)
+        {
+            boolean letter = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (letter && start < 0)
+            {
+                start = i;
+            }
+            else if (!letter && start >= 0)
+            {
+                words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return words;
+
+    } // end of tokenize()
+
+} // end of the AlbumSearchIndex class
@@ -0,0 +1,225 @@
+/**********************************************************
+ * Class: AlbumStore                                      *
+ *                                                        *
+ * Author: Zubaidah Alqaisi                               *
+ *                                                        *
+ * Private members: artists, categories, textArena,       *
+ *                  arenaLength, idStart, idLength,       *
+ *                  titleStart, titleLength, artistIds,   *
+ *                  categoryIds, size                     *
+ *                                                        *
+ * Public members: add(), size(), getEntryId(),           *
+ *                 getTitle(), getArtist(),               *
+ *                 getCategory(), getArtistId(),          *
+ *                 getCategoryId(), get(), clear(),       *
+ *                 AlbumView                              *
+ *                                                        *
+ * Purpose: Stores many albums column by column instead of*
+ *          as separate objects. Artists and categories   *
+ *          are kept as int ids into a StringTable, so a  *
+ *          value that repeats is stored once, and all the*
+ *          entry ids and titles share one char array.    *
+ *          Single albums are read back through small     *
+ *          AlbumView objects that only hold the store and*
+ *          a row number.                                 *
+ *********************************************************/
+
+import java.util.Arrays;
+
+public class AlbumStore {
+
+    // dictionaries of the repeated values
+    private final StringTable artists = new StringTable();
+    private final StringTable categories = new StringTable();
+
+    // every entry id and title, one after another, in one array
+    private char[] textArena = new char[4096];
+    private int arenaLength = 0;
+
+    // the columns, one entry per album, a text column is a start and a length in the arena
+    private int[] idStart = new int[256];
+    private int[] idLength = new int[256];
+    private int[] titleStart = new int[256];
+    private int[] titleLength = new int[256];
+    private int[] artistIds = new int[256];
+    private int[] categoryIds = new int[256];
+    private int size = 0;
+
+    /*******************************************************
+     * Function: add()                                     *
+     * Purpose: Copies an album into the columns.          *
+     * @param album                                        *
+     * Return: the row of the album in the store           *
+     */
+
+    public int add(Album album)
+    {
+        // grow the columns when they are full
+        if (size == titleStart.length)
+        {
+            int capacity = size * 2;
+            idStart = Arrays.copyOf(idStart, capacity);
+            idLength = Arrays.copyOf(idLength, capacity);
+            titleStart = Arrays.copyOf(titleStart, capacity);
+            titleLength = Arrays.copyOf(titleLength, capacity);
+            artistIds = Arrays.copyOf(artistIds, capacity);
+            categoryIds = Arrays.copyOf(categoryIds, capacity);
+        }
+
+        // append the id and the title to the arena
+        idStart[size] = arenaLength;
+        idLength[size] = appendText(album.getEntryId());
+        titleStart[size] = arenaLength;
+        titleLength[size] = appendText(album.getAlbumName());
+
+        artistIds[size] = artists.intern(album.getSingerName());
+        categoryIds[size] = categories.intern(album.getMusicType());
+
+        return size++;
+
+    } // end of add()
+
+    // copy a string to the end of the arena, returns its length or -1 for a missing string
+    private int appendText(String text)
+    {
+        if (text == null)
+        {
+            return -1;
+        }
+
+        if (arenaLength + text.length() > textArena.length)
+        {
+            textArena = Arrays.copyOf(textArena, Math.max(textArena.length * 2, arenaLength + text.length()));
+        }
+        text.getChars(0, text.length(), textArena, arenaLength);
+        arenaLength += text.length();
+        return text.length();
+    }
+
+    // number of albums in the store
+    public int size() {
+        return size;
+    }
+
+    // the entry id and title of a row, built from the arena when they are asked for
+    public String getEntryId(int row) {
+        int length = idLength[row];
+        return length < 0 ? null : new String(textArena, idStart[row], length);
+    }
+
+    public String getTitle(int row) {
+        int length = titleLength[row];
+        return length < 0 ? null : new String(textArena, titleStart[row], length);
+    }
+
+    // the artist and category of a row, the same String instance for every row that shares it
+    public String getArtist(int row) {
+        return artists.get(artistIds[row]);
+    }
+
+    public String getCategory(int row) {
+        return categories.get(categoryIds[row]);
+    }
+
+    // the dictionary ids of a row, equal ids mean equal values
+    public int getArtistId(int row) {
+        return artistIds[row];
+    }
+
+    public int getCategoryId(int row) {
+        return categoryIds[row];
+    }
+
+    // the dictionaries, used to turn ids back into strings
+    public StringTable getArtists() {
+        return artists;
+    }
+
+    public StringTable getCategories() {
+        return categories;
+    }
+
+    /*******************************************************
+     * Function: get()                                     *
+     * Purpose: Returns a view of one row that can be used *
+     *          wherever an Album is expected.             *
+     * @param row                                          *
+     * Return: the view                                   *
+     */
+
+    public Album get(int row)
+    {
+        return new AlbumView(this, row);
+
+    } // end of get()
+
+    /*******************************************************
+     * Function: clear()                                   *
+     * Purpose: Removes every album but keeps the arrays,  *
+     *          so the next albums loaded reuse them. The  *
+     *          dictionaries are emptied, or the artists   *
+     *          of every catalog ever shown would stay.    *
+     * Argument: none                                      *
+     * Return: none void                                   *
+     */
+
+    public void clear()
+    {
+        size = 0;
+        arenaLength = 0;
+        artists.clear();
+        categories.clear();
+
+    } // end of clear()
+
+    /******************************************************
+     * Class: AlbumView                                   *
+     * Purpose: A flyweight Album that reads its values   *
+     *          from a row of the store. The row can be   *
+     *          moved, so one view can walk the whole     *
+     *          store without creating objects.           *
+     */
+
+    public static class AlbumView extends Album {
+
+        private final AlbumStore store;
+        private int row;
+
+        public AlbumView(AlbumStore store, int row) {
+            this.store = store;
+            this.row = row;
+        }
+
+        // point the view at another row
+        public AlbumView moveTo(int row) {
+            this.row = row;
+            return this;
+        }
+
+        public int getRow() {
+            return row;
+        }
+
+        @Override
+        public String getEntryId() {
+            return store.getEntryId(row);
+        }
+
+        @Override
+        public String getAlbumName() {
+            return store.getTitle(row);
+        }
+
+        @Override
+        public String getSingerName() {
+            return store.getArtist(row);
+        }
+
+        @Override
+        public String getMusicType() {
+            return store.getCategory(row);
+        }
+
+    } // end of AlbumView class
+
+} // end of the AlbumStore class
@@ -0,0 +1,480 @@
+/**********************************************************
+ * Class: AlbumTableModel                                 *
+ *                                                        *
+ * Author: Zubaidah Alqaisi                               *
+ *                                                        *
+ * Private members: COLUMNS, store, index, sections,      *
+ *                  order, offsets, rowCount              *
+ *                                                        *
+ * Public members: getRowCount(), getColumnCount(),       *
+ *                 getColumnName(), getValueAt(),         *
+ *                 getStore(), getIndex(), storeRow(),    *
+ *                 retainFeeds(), getAlbums(),            *
+ *                 getCatalog(), setAlbums(),             *
+ *                 setCatalog(), setFeed(), apply(),      *
+ *                 clear()                                *
+ *                                                        *
+ * Purpose: The table model behind the album table. The   *
+ *          albums are kept in a columnar AlbumStore and  *
+ *          cells are read from its columns when the table*
+ *          paints them. The table shows one section per  *
+ *          feed, each a list of store rows in rank order.*
+ *          A download only sends AlbumChanges, and every *
+ *          chunk of them is announced with one update    *
+ *          event (plus one insert event if rows were     *
+ *          added at the end), so the EDT time per chunk  *
+ *          does not grow with the rows already shown.    *
+ *          Every row is also kept in an AlbumSearchIndex *
+ *          by its store row, so the table can be filtered*
+ *          without scanning it.                          *
+ *********************************************************/
+
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class AlbumTableModel extends AbstractTableModel {
+
+    private static final long serialVersionUID = 1L;
+
+    // the column titles
+    private static final String[] COLUMNS = {"Album", "Artist", "Category"};
+
+    // the albums shown; rows replaced by a refresh stay in the store until it is compacted
+    private AlbumStore store = new AlbumStore();
+
+    // search index over the rows shown, by store row
+    private final AlbumSearchIndex index = new AlbumSearchIndex();
+
+    // the store rows of every feed, and the order the feeds are shown in
+    private final Map<FeedKey, Section> sections = new HashMap<FeedKey, Section>();
+    private final List<FeedKey> order = new ArrayList<FeedKey>();
+
+    // first table row of every section, and the number of table rows
+    private int[] offsets = new int[0];
+    private int rowCount = 0;
+
+    /******************************************************
+     * Class: Section                                     *
+     * Purpose: The store rows of one feed, by rank.      *
+     */
+
+    private static class Section {
+
+        private int[] rows = new int[16];
+        private int size = 0;
+
+        void set(int rank, int row) {
+            if (rank == size)
+            {
+                if (size == rows.length)
+                {
+                    rows = Arrays.copyOf(rows, size * 2);
+                }
+                size++;
+            }
+            rows[rank] = row;
+        }
+
+    } // end of Section class
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return String.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        int storeRow = storeRow(row);
+        switch (column)
+        {
+            case 0:
+                return store.getTitle(storeRow);
+            case 1:
+                return store.getArtist(storeRow);
+            default:
+                return store.getCategory(storeRow);
+        }
+    }
+
+    // the store the rows are read from
+    public AlbumStore getStore() {
+        return store;
+    }
+
+    // the search index, its album numbers are store rows
+    public AlbumSearchIndex getIndex() {
+        return index;
+    }
+
+    // add an album to the store and the index
+    private int addRow(Album album)
+    {
+        int row = store.add(album);
+        index.add(row, album);
+        return row;
+    }
+
+    // take the rows of a section from rank on out of the index
+    private void removeRows(Section section, int fromRank)
+    {
+        for (int rank = fromRank; rank < section.size; rank++)
+        {
+            index.remove(section.rows[rank]);
+        }
+    }
+
+    /*******************************************************
+     * Function: storeRow()                                *
+     * Purpose: Finds the store row shown at a table row   *
+     *          with a binary search over the sections.    *
+     * @param row                                          *
+     * Return: the store row                               *
+     */
+
+    public int storeRow(int row)
+    {
+        int position = Arrays.binarySearch(offsets, row);
+        if (position < 0)
+        {
+            position = -position - 2;     // the section that starts before the row
+        }
+
+        // skip empty sections that start at the same row
+        while (position + 1 < offsets.length && offsets[position + 1] == row)
+        {
+            position++;
+        }
+
+        Section section = sections.get(order.get(position));
+        return section.rows[row - offsets[position]];
+
+    } // end of storeRow()
+
+    /*******************************************************
+     * Function: retainFeeds()                             *
+     * Purpose: Shows exactly these feeds, in this order.  *
+     *          Feeds already shown keep their rows so a   *
+     *          download can be compared with them.        *
+     * @param feeds                                        *
+     * Return: none void                                   *
+     */
+
+    public void retainFeeds(List<FeedKey> feeds)
+    {
+        compactIfNeeded();
+        if (order.equals(feeds))
+        {
+            return;
+        }
+
+        for (Map.Entry<FeedKey, Section> entry : sections.entrySet())
+        {
+            if (!feeds.contains(entry.getKey()))
+            {
+                removeRows(entry.getValue(), 0);
+            }
+        }
+        sections.keySet().retainAll(feeds);
+        for (FeedKey feed : feeds)
+        {
+            sections.computeIfAbsent(feed, key -> new Section());
+        }
+        order.clear();
+        order.addAll(feeds);
+
+        updateOffsets();
+        fireTableDataChanged();
+
+    } // end of retainFeeds()
+
+    /*******************************************************
+     * Function: getAlbums()                               *
+     * Purpose: Copies the albums shown for a feed, so a   *
+     *          download thread can compare with them.     *
+     * @param feed                                         *
+     * Return: the albums in rank order                    *
+     */
+
+    public List<Album> getAlbums(FeedKey feed)
+    {
+        List<Album> albums = new ArrayList<Album>();
+        Section section = sections.get(feed);
+        if (section != null)
+        {
+            for (int rank = 0; rank < section.size; rank++)
+            {
+                int row = section.rows[rank];
+                albums.add(new Album(store.getEntryId(row), store.getTitle(row), store.getArtist(row),
+                        store.getCategory(row)));
+            }
+        }
+        return albums;
+
+    } // end of getAlbums()
+
+    /*******************************************************
+     * Function: getCatalog()                              *
+     * Purpose: Copies the albums of every feed shown.     *
+     * Argument: none                                      *
+     * Return: the albums of every feed, in the order the  *
+     *         feeds are shown                             *
+     */
+
+    public Map<FeedKey, List<Album>> getCatalog()
+    {
+        Map<FeedKey, List<Album>> catalog = new LinkedHashMap<FeedKey, List<Album>>();
+        for (FeedKey feed : order)
+        {
+            catalog.put(feed, getAlbums(feed));
+        }
+        return catalog;
+
+    } // end of getCatalog()
+
+    /*******************************************************
+     * Function: setAlbums()                               *
+     * Purpose: Shows only one feed, with these albums.    *
+     * @param feed                                         *
+     * @param all                                          *
+     * Return: none void                                   *
+     */
+
+    public void setAlbums(FeedKey feed, List<Album> all)
+    {
+        setCatalog(Collections.singletonMap(feed, all));
+
+    } // end of setAlbums()
+
+    /*******************************************************
+     * Function: setCatalog()                              *
+     * Purpose: Shows these feeds with these albums, in the*
+     *          order of the map.                          *
+     * @param catalog                                      *
+     * Return: none void                                   *
+     */
+
+    public void setCatalog(Map<FeedKey, List<Album>> catalog)
+    {
+        store.clear();
+        index.clear();
+        sections.clear();
+        order.clear();
+
+        for (Map.Entry<FeedKey, List<Album>> entry : catalog.entrySet())
+        {
+            Section section = new Section();
+            for (Album album : entry.getValue())
+            {
+                section.set(section.size, addRow(album));
+            }
+            sections.put(entry.getKey(), section);
+            order.add(entry.getKey());
+        }
+
+        updateOffsets();
+        fireTableDataChanged();
+
+    } // end of setCatalog()
+
+    /*******************************************************
+     * Function: setFeed()                                 *
+     * Purpose: Replaces the rows of one feed that is shown*
+     *          with these albums, e.g. to undo the changes*
+     *          of a download that was cancelled.          *
+     * @param feed                                         *
+     * @param albums                                       *
+     * Return: none void                                   *
+     */
+
+    public void setFeed(FeedKey feed, List<Album> albums)
+    {
+        Section section = sections.get(feed);
+        if (section == null)
+        {
+            return;     // the feed is no longer shown
+        }
+
+        removeRows(section, 0);
+        section.size = 0;
+        for (Album album : albums)
+        {
+            section.set(section.size, addRow(album));
+        }
+        updateOffsets();
+        fireTableDataChanged();
+
+    } // end of setFeed()
+
+    /*******************************************************
+     * Function: apply()                                   *
+     * Purpose: Applies a chunk of changes published by a  *
+     *          download. Changed rows are announced with  *
+     *          one update event, rows added at the end of *
+     *          the table with one insert event. Anything  *
+     *          that shifts rows becomes one data-changed  *
+     *          event.                                     *
+     * @param changes                                      *
+     * Return: none void                                   *
+     */
+
+    public void apply(List<AlbumChange> changes)
+    {
+        int oldRowCount = rowCount;
+        int firstUpdated = Integer.MAX_VALUE;
+        int lastUpdated = -1;
+        boolean shifted = false;
+
+        for (AlbumChange change : changes)
+        {
+            Section section = sections.get(change.getFeed());
+            if (section == null)
+            {
+                continue;       // the feed is no longer shown
+            }
+            int position = order.indexOf(change.getFeed());
+
+            switch (change.getKind())
+            {
+                case ADDED:
+                case MOVED:
+                case UPDATED:
+                    int rank = change.getRank();
+                    if (rank < section.size)
+                    {
+                        index.remove(section.rows[rank]);
+
+                        // a row that is already shown
+                        int row = offsets[position] + rank;
+                        firstUpdated = Math.min(firstUpdated, row);
+                        lastUpdated = Math.max(lastUpdated, row);
+                    }
+                    else if (offsets[position] + section.size != rowCount)
+                    {
+                        // a new row in the middle of the table moves the rows after it
+                        shifted = true;
+                    }
+                    section.set(rank, addRow(change.getAlbum()));
+                    if (rank == section.size - 1)
+                    {
+                        updateOffsets();
+                    }
+                    break;
+
+                case RESIZED:
+                    removeRows(section, change.getRank());
+                    section.size = Math.min(section.size, change.getRank());
+                    shifted = true;
+                    updateOffsets();
+                    break;
+
+                default:
+                    break;      // a removed album's row was replaced or cut off by RESIZED, FINISHED only marks
+                                // the end of a feed
+            }
+        }
+
+        // one event for the whole chunk
+        if (shifted)
+        {
+            fireTableDataChanged();
+            return;
+        }
+        if (lastUpdated >= 0)
+        {
+            fireTableRowsUpdated(firstUpdated, lastUpdated);
+        }
+        if (rowCount > oldRowCount)
+        {
+            fireTableRowsInserted(oldRowCount, rowCount - 1);
+        }
+
+    } // end of apply()
+
+    // remove every row
+    public void clear()
+    {
+        store.clear();
+        index.clear();
+        sections.clear();
+        order.clear();
+        updateOffsets();
+        fireTableDataChanged();
+    }
+
+    // work out the first table row of every section
+    private void updateOffsets()
+    {
+        if (offsets.length != order.size())
+        {
+            offsets = new int[order.size()];
+        }
+
+        int row = 0;
+        for (int i = 0; i < order.size(); i++)
+        {
+            offsets[i] = row;
+            row += sections.get(order.get(i)).size;
+        }
+        rowCount = row;
+    }
+
+    /*******************************************************
+     * Function: compactIfNeeded()                         *
+     * Purpose: Copies the rows still shown into a new     *
+     *          store once replaced rows take up more than *
+     *          half of the old one.                       *
+     * Argument: none                                      *
+     * Return: none void                                   *
+     */
+
+    private void compactIfNeeded()
+    {
+        int live = 0;
+        for (Section section : sections.values())
+        {
+            live += section.size;
+        }
+        if (store.size() <= 2 * live + 1024)
+        {
+            return;
+        }
+
+        // the index numbers albums by store row, so it is built again with the new rows
+        AlbumStore compacted = new AlbumStore();
+        AlbumStore.AlbumView view = new AlbumStore.AlbumView(store, 0);
+        index.clear();
+        for (Section section : sections.values())
+        {
+            for (int rank = 0; rank < section.size; rank++)
+            {
+                int row = compacted.add(view.moveTo(section.rows[rank]));
+                index.add(row, view);
+                section.rows[rank] = row;
+            }
+        }
+        store = compacted;
+
+    } // end of compactIfNeeded()
+
+} // end of the AlbumTableModel class
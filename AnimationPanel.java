@@ -3,35 +3,99 @@
  *                                                        *
  * Author: Zubaidah Alqaisi                               *
  *                                                        *
- * Private members: ArrayList<Ball> balls, Dimension      *
+ * Private members: frameLock, particles,                 *
+ *                 Dimension                              *
  *                 dimension , Thread thread, Clip        *
  *                 bounceSound, Clip backgroundMusic.     *
- *                 int delay.                             *
+ *                 int delay, ticks, THREADS, frame counts*
+ *                 candidates, contacts                   *
+ *                 backBuffer, drawn and dirty rectangles *
  * Public members: AnimationPanel, start(), stop(), run() *
+ *                 setDelay()                             *
  * Protected members: void paintComponent(Graphics g).    *
  * Purpose:This subclass of JPanel will be used to display*
  *         the animation in a separate background thread. *
  *   Therefore, it should implement the Runnable interface*
+ *   The thread moves the balls in fixed steps of delay   *
+ *   milliseconds measured with System.nanoTime(), however*
+ *   often Swing gets to paint, and asks for about 60     *
+ *   frames a second. Each frame draws the balls between  *
+ *   their last two steps and shows the frame rate.       *
+ *   With -Danimation.active=true the thread draws the    *
+ *   frames itself instead of asking Swing to repaint: it *
+ *   keeps the picture in an accelerated VolatileImage,   *
+ *   erases and draws only the rectangles the balls moved *
+ *   through, and copies just those to the screen.        *
+ *   -Danimation.balls=N adds N small balls to the three. *
+ *   The balls are kept in a ParticleSystem and moved all *
+ *   at once.                                             *
+ *   The step is shared out over -Danimation.threads      *
+ *   threads (one per core by default) without holding the*
+ *   lock the painter needs, and every frame is drawn from*
+ *   the snapshot of the positions published after it.    *
+ *   After every step the balls bounce off each other; the*
+ *   pairs tested and the pairs touching per step are     *
+ *   shown with the frame rate.                           *
  *********************************************************/
 
 import javax.imageio.IIOException;
 import javax.sound.sampled.*;
 import javax.swing.*;
 import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
 import java.io.File;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
-import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class AnimationPanel extends JPanel implements  Runnable{
 
     // data member of the class
-    private ArrayList<Ball> balls;
-    private Dimension dimension;
+    private final Object frameLock = new Object();      // held while the balls are created or the back buffer is used
+    private ParticleSystem particles;
+    private volatile Dimension dimension;   // set once the balls are created
     private Thread thread;
     private Clip bounceSound;
     private Clip backgroundMusic;
-    private int delay;
+    private volatile int delay;             // milliseconds of simulated time per step
+
+    // frames asked for each second, can be changed with -Danimation.fps
+    private static final int FRAMES_PER_SECOND = Integer.getInteger("animation.fps", 60);
+
+    // time simulated at most per frame, so a stalled thread does not have to catch up all at once
+    private static final long MAX_FRAME_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+
+    // draw from the animation thread instead of through repaint(), and the balls added to the first three
+    private static final boolean ACTIVE = Boolean.getBoolean("animation.active");
+    private static final int EXTRA_BALLS = Integer.getInteger("animation.balls", 0);
+
+    // the threads that move the balls, can be changed with -Danimation.threads
+    private static final int THREADS = Integer.getInteger("animation.threads",
+            Runtime.getRuntime().availableProcessors());
+
+    // the picture the animation thread draws into, and whether all of it must be drawn again
+    private Image backBuffer;
+    private boolean fullRedraw = true;
+
+    // the top left corner each ball was last drawn at, and the rectangles changed by this frame
+    private int[] drawnX = new int[0];
+    private int[] drawnY = new int[0];
+    private Rectangle[] dirty = new Rectangle[0];
+    private long dirtyPixels = 0;           // pixels copied to the screen since the counters were shown
+
+    // steps simulated and frames painted since the counters were last shown, and the values shown
+    private AtomicLong ticks = new AtomicLong();
+    private AtomicLong candidates = new AtomicLong();       // pairs of balls tested for collisions
+    private AtomicLong contacts = new AtomicLong();         // pairs of balls found touching
+    private int frames = 0;
+    private long frameStart = 0;
+    private long worstFrameNanos = 0;
+    private long lastPaint = 0;
+    private String frameRate = "";
 
     /*********************************************************
      * Function: AnimationPanel()                            *
@@ -45,7 +109,7 @@ public class AnimationPanel extends JPanel implements  Runnable{
 
     public AnimationPanel ()
     {
-        balls = new ArrayList<Ball>();  // create instance of the arrayList
+        particles = new ParticleSystem(3 + EXTRA_BALLS);
         dimension = null;
         thread = null;
         delay = 25; // starting value of the delay
@@ -144,11 +208,12 @@ public class AnimationPanel extends JPanel implements  Runnable{
      * Function: paintComponent(Graphics g)                *
      * Purpose: This method should be overridden to call   *
      *          the superclass version of the method,      *
-     *          creates a set of Ball objects and add them *
-     *         to the ArrayList, then get the dimensions of*
-     *         the panel by calling getSize(), Draw the    *
-     *         white background, Call the move() and draw()*
-     *       methods for each Ball object in the ArrayList.*
+     *          creates the balls and gets the dimensions  *
+     *         of the panel the first time, Draw the white *
+     *         background, and draw each ball between      *
+     *         its last two steps. The balls are moved by  *
+     *         run(), not here, and the frame rate is drawn*
+     *         in the corner.                              *
      *                                                     *
      * @param g                                            *
      * Return: none void                                   *
@@ -160,32 +225,331 @@ public class AnimationPanel extends JPanel implements  Runnable{
         //Call the superclass version of the method
         super.paintComponent(g);
 
-        //If the Dimension object reference is null
-        if (dimension == null)
+        // the animation thread may draw into the back buffer while this copies it
+        synchronized (frameLock)
         {
-         //create a set of Ball objects and add them to the ArrayList, then get the dimensions of the panel by calling getSize().
-            balls.add(new Ball(Color.BLUE, 20, 250, 250, 7, 6, bounceSound));
-            balls.add(new Ball(Color.YELLOW, 20, 150, 150, -4, -5, bounceSound));
-            balls.add(new Ball(Color.RED, 20, 100, 100, 3, 8, bounceSound));
+            //If the Dimension object reference is null
+            if (dimension == null)
+            {
+                createBalls();
+            }
+
+            // the animation thread draws the frames, only copy its picture
+            if (backBuffer != null)
+            {
+                g.drawImage(backBuffer, 0, 0, null);
+                if (backBuffer instanceof VolatileImage && ((VolatileImage) backBuffer).contentsLost())
+                {
+                    fullRedraw = true;
+                }
+                return;
+            }
+
+            // set the color of the background panel to white
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, dimension.width, dimension.height);  // drawing the background panel
+
+            // set the frame for the panel to black
+            g.setColor((Color.BLACK));
+            g.drawRect(0, 0, dimension.width, dimension.height );
+
+            // draw each ball between where it was and where it is, from the last positions published
+            ParticleSystem.Snapshot snapshot = particles.front();
+            synchronized (snapshot)
+            {
+                for (int i = 0; i < snapshot.size(); i++)
+                {
+                    int radius = particles.getRadius(i);
+                    g.setColor(particles.getColor(i));
+                    g.fillOval(snapshot.drawX(i) - radius, snapshot.drawY(i) - radius, radius * 2, radius * 2);
+                }
+            }
+        }
+
+        countFrame();
+        g.setColor(Color.BLACK);
+        g.drawString(frameRate, 6, getHeight() - 6);
+    }// end paintComponent()
+
+    /*******************************************************
+     * Function: createBalls()                             *
+     * Purpose: Creates a set of balls in the particle     *
+     *          system, then get the dimensions of the     *
+     *          panel by calling getSize(). The            *
+     *          extra balls are small, silent and always   *
+     *          the same, so runs can be compared. The size*
+     *          is set last: the animation thread starts   *
+     *          moving the balls once it sees it.          *
+     * Argument: none                                      *
+     * Return: none void                                   *
+     */
+
+    private void createBalls()
+    {
+        particles.add(Color.BLUE, 20, 250, 250, 7, 6, true);
+        particles.add(Color.YELLOW, 20, 150, 150, -4, -5, true);
+        particles.add(Color.RED, 20, 100, 100, 3, 8, true);
+
+        // get the size of the panel and return the width of the panel area and the height
+        Dimension size = getSize();
+
+        Random random = new Random(470);
+        Color[] colors = { Color.BLUE, Color.YELLOW, Color.RED, Color.GREEN, Color.MAGENTA, Color.ORANGE };
+        for (int i = 0; i < EXTRA_BALLS; i++)
+        {
+            int radius = 3 + random.nextInt(4);
+            int x = radius + 1 + random.nextInt(Math.max(1, size.width - 2 * radius - 2));
+            int y = radius + 1 + random.nextInt(Math.max(1, size.height - 2 * radius - 2));
+            int dx = (1 + random.nextInt(5)) * (random.nextBoolean() ? 1 : -1);
+            int dy = (1 + random.nextInt(5)) * (random.nextBoolean() ? 1 : -1);
+            particles.add(colors[i % colors.length], radius, x, y, dx, dy, false);
+        }
+
+        particles.publish(1.0);
+        dimension = size;
+
+    } // end of createBalls()
+
+    /*******************************************************
+     * Function: render()                                  *
+     * Purpose: Draws a frame from the animation thread.   *
+     *          The picture is kept in an accelerated      *
+     *          VolatileImage, which is checked before     *
+     *          every frame: if the screen changed it is   *
+     *          created again, if its contents were lost   *
+     *          they are drawn again. Only the rectangles  *
+     *          the balls moved through are erased, drawn  *
+     *          and copied to the screen, unless they cover*
+     *          so much of the panel that doing all of it  *
+     *          is cheaper. Without an accelerated screen  *
+     *          (a headless JVM) a BufferedImage is used.  *
+     * Argument: none                                      *
+     * Return: none void                                   *
+     */
+
+    private void render()
+    {
+        Graphics screen = getGraphics();
+        synchronized (frameLock)
+        {
+            // the first paint has not happened yet
+            if (dimension == null)
+            {
+                if (screen != null)
+                {
+                    screen.dispose();
+                }
+                return;
+            }
+
+            do {
+                GraphicsConfiguration configuration = getGraphicsConfiguration();
+                if (backBuffer == null)
+                {
+                    backBuffer = configuration != null
+                            ? configuration.createCompatibleVolatileImage(dimension.width, dimension.height)
+                            : new BufferedImage(dimension.width, dimension.height, BufferedImage.TYPE_INT_RGB);
+                    fullRedraw = true;
+                }
+                else if (backBuffer instanceof VolatileImage && configuration != null)
+                {
+                    int valid = ((VolatileImage) backBuffer).validate(configuration);
+                    if (valid == VolatileImage.IMAGE_INCOMPATIBLE)
+                    {
+                        backBuffer.flush();
+                        backBuffer = configuration.createCompatibleVolatileImage(dimension.width, dimension.height);
+                        fullRedraw = true;
+                    }
+                    else if (valid == VolatileImage.IMAGE_RESTORED)
+                    {
+                        fullRedraw = true;
+                    }
+                }
+
+                Graphics buffer = backBuffer.getGraphics();
+                int count;
+                try {
+                    count = drawFrame(buffer);
+                }
+                finally {
+                    buffer.dispose();
+                }
+
+                // copy the changed rectangles, or all of it after a full redraw
+                if (screen != null)
+                {
+                    if (count < 0)
+                    {
+                        screen.drawImage(backBuffer, 0, 0, null);
+                        dirtyPixels += (long) dimension.width * dimension.height;
+                    }
+                    else
+                    {
+                        for (int i = 0; i < count; i++)
+                        {
+                            Rectangle r = dirty[i];
+                            screen.drawImage(backBuffer, r.x, r.y, r.x + r.width, r.y + r.height,
+                                    r.x, r.y, r.x + r.width, r.y + r.height, null);
+                            dirtyPixels += (long) r.width * r.height;
+                        }
+                    }
+                }
+            } while (backBuffer instanceof VolatileImage && ((VolatileImage) backBuffer).contentsLost());
+        }
+
+        if (screen != null)
+        {
+            screen.dispose();
+            Toolkit.getDefaultToolkit().sync();     // show the frame now, not when the window system gets to it
+        }
+        countFrame();
+
+    } // end of render()
+
+    /*******************************************************
+     * Function: drawFrame()                               *
+     * Purpose: Draws the balls where the last snapshot has*
+     *          them into the back buffer, erasing where   *
+     *          they were last drawn, and lists the        *
+     *          rectangles that changed: for every ball the*
+     *          union of where it was and where it is.     *
+     * @param g the back buffer                            *
+     * Return: the number of rectangles in dirty, or -1 if *
+     *         the whole picture was drawn                 *
+     */
 
-            // get the size of the panel and return the width of the panel area and the height
-            dimension = getSize();
+    private int drawFrame(Graphics g)
+    {
+        int count = particles.size();
+        if (drawnX.length != count)
+        {
+            drawnX = new int[count];
+            drawnY = new int[count];
+            dirty = new Rectangle[count + 1];
+            for (int i = 0; i < dirty.length; i++)
+            {
+                dirty[i] = new Rectangle();
+            }
+            fullRedraw = true;
+        }
+
+        // when the balls cover half of the panel, drawing it all is cheaper than many small rectangles
+        if (!fullRedraw)
+        {
+            long area = 0;
+            for (int i = 0; i < count; i++)
+            {
+                int size = 2 * particles.getRadius(i) + 1;
+                area += 2L * size * size;
+            }
+            fullRedraw = area * 2 > (long) dimension.width * dimension.height;
         }
-        // set the color of the background panel to white
+
+        boolean all = fullRedraw;
         g.setColor(Color.WHITE);
-        g.fillRect(0, 0, dimension.width, dimension.height);  // drawing the background panel
+        if (all)
+        {
+            g.fillRect(0, 0, dimension.width, dimension.height);
+        }
+        else
+        {
+            // erase every ball where it was drawn last
+            for (int i = 0; i < count; i++)
+            {
+                int size = 2 * particles.getRadius(i) + 1;
+                g.fillRect(drawnX[i], drawnY[i], size, size);
+            }
+        }
 
-        // set the frame for the panel to black
+        // set the frame for the panel to black, a ball next to it may have erased a part of it
         g.setColor((Color.BLACK));
         g.drawRect(0, 0, dimension.width, dimension.height );
 
-        // draw each ball according to the dimensions and colors provided
-        for(Ball ball : balls)
+        // draw every ball and note the rectangle it changed, all from one snapshot
+        ParticleSystem.Snapshot snapshot = particles.front();
+        synchronized (snapshot)
         {
-            ball.move(dimension);
-            ball.draw(g);
+            for (int i = 0; i < count; i++)
+            {
+                int radius = particles.getRadius(i);
+                int size = 2 * radius + 1;
+                int x = snapshot.drawX(i) - radius;
+                int y = snapshot.drawY(i) - radius;
+                g.setColor(particles.getColor(i));
+                g.fillOval(x, y, radius * 2, radius * 2);
+
+                dirty[i].setBounds(drawnX[i], drawnY[i], size, size);
+                dirty[i].add(x, y);
+                dirty[i].add(x + size, y + size);
+                drawnX[i] = x;
+                drawnY[i] = y;
+            }
         }
-    }// end paintComponent()
+
+        // the frame rate, with the share of the panel copied to the screen
+        FontMetrics metrics = g.getFontMetrics();
+        Rectangle text = dirty[count];
+        text.setBounds(4, dimension.height - metrics.getHeight() - 4, dimension.width - 8, metrics.getHeight() + 2);
+        g.setColor(Color.WHITE);
+        g.fillRect(text.x, text.y, text.width, text.height);
+        g.setColor(Color.BLACK);
+        g.drawString(frameRate, 6, dimension.height - 6);
+
+        fullRedraw = false;
+        return all ? -1 : count + 1;
+
+    } // end of drawFrame()
+
+    /*******************************************************
+     * Function: countFrame()                              *
+     * Purpose: Counts the frames painted and, once a      *
+     *          second, works out the frames and steps per *
+     *          second and the longest time between two    *
+     *          frames. In active mode it also works out   *
+     *          the share of the panel copied to the screen*
+     *          per frame.                                 *
+     * Argument: none                                      *
+     * Return: none void                                   *
+     */
+
+    private void countFrame()
+    {
+        long now = System.nanoTime();
+        if (lastPaint != 0)
+        {
+            worstFrameNanos = Math.max(worstFrameNanos, now - lastPaint);
+        }
+        lastPaint = now;
+        frames++;
+
+        if (frameStart == 0)
+        {
+            frameStart = now;
+        }
+        else if (now - frameStart >= TimeUnit.SECONDS.toNanos(1))
+        {
+            long steps = ticks.getAndSet(0);
+            long tested = candidates.getAndSet(0);
+            long touching = contacts.getAndSet(0);
+            double seconds = (now - frameStart) / 1e9;
+            frameRate = String.format("%d balls  %.0f fps  %.1f ms worst  %.0f steps/s", particles.size(),
+                    frames / seconds, worstFrameNanos / 1e6, steps / seconds);
+            if (steps > 0)
+            {
+                frameRate += String.format("  %d tested %d touching", tested / steps, touching / steps);
+            }
+            if (ACTIVE && dimension != null)
+            {
+                frameRate += String.format("  %.0f%% copied", 100.0 * dirtyPixels / frames
+                        / ((long) dimension.width * dimension.height));
+            }
+            frames = 0;
+            worstFrameNanos = 0;
+            dirtyPixels = 0;
+            frameStart = now;
+        }
+
+    } // end of countFrame()
 
     /***********************************************************
      * Function: run()                                         *
@@ -193,7 +557,16 @@ public class AnimationPanel extends JPanel implements  Runnable{
      *          run in the separate background thread. It will *
      *          have a loop that continues while the current   *
      *          thread is equal to the Thread reference data   *
-     *          member.                                        *
+     *          member. Every frame it adds the time that went *
+     *          by to an accumulator and moves the balls one   *
+     *          step for every delay milliseconds in it, so the*
+     *          balls keep their speed however busy the EDT   *
+     *          is. The steps are shared by the threads of a   *
+     *          pool that lives as long as this thread, the    *
+     *          balls that touch are bounced off each          *
+     *          other, then the positions are published with   *
+     *          what is left over, which tells the painter how *
+     *          far to draw the balls towards the next step.   *
      * Argument: none                                          *
      * Return: none void                                       *
      *
@@ -201,24 +574,79 @@ public class AnimationPanel extends JPanel implements  Runnable{
 
     public void run()
     {
-        // if the current thread is equal to the thread data member
-        while (Thread.currentThread() == thread)
-        {
-            try {
-                // put the thread to sleep
-                Thread.sleep(delay);
+        long frameNanos = TimeUnit.SECONDS.toNanos(1) / FRAMES_PER_SECOND;
+        long previous = System.nanoTime();
+        long accumulator = 0;
 
-                // call the paint component to do its work
-                repaint();
+        // the threads that share each step, shut down when the animation stops
+        ForkJoinPool pool = THREADS > 1 ? new ForkJoinPool(THREADS) : null;
+        try {
+            // if the current thread is equal to the thread data member
+            while (Thread.currentThread() == thread)
+            {
+                long now = System.nanoTime();
+                accumulator += Math.min(now - previous, MAX_FRAME_NANOS);
+                previous = now;
+
+                // one step for every delay in the accumulator; a delay of 0 steps once a millisecond
+                long stepNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(delay, 1));
+                // the balls are created by the first paint, once the size of the panel is known
+                Dimension size = dimension;
+                if (size != null)
+                {
+                    while (accumulator >= stepNanos)
+                    {
+                        // play the bounce once for the step, however many of the three balls hit a wall
+                        if (particles.step(size, pool) > 0 && bounceSound != null)
+                        {
+                            bounceSound.loop(1);
+                        }
+                        particles.collide(size);
+                        candidates.addAndGet(particles.getCandidates());
+                        contacts.addAndGet(particles.getContacts());
+                        accumulator -= stepNanos;
+                        ticks.incrementAndGet();
+                    }
+                    particles.publish(Math.min(1.0, (double) accumulator / stepNanos));
+                }
+                else
+                {
+                    accumulator = 0;
+                }
+
+                // draw the frame here, or call the paint component to do its work
+                if (ACTIVE)
+                {
+                    render();
+                }
+                else
+                {
+                    repaint();
+                }
+
+                try {
+                    // sleep for the rest of the frame
+                    long sleep = frameNanos - (System.nanoTime() - now);
+                    if (sleep > 0)
+                    {
+                        TimeUnit.NANOSECONDS.sleep(sleep);
+                    }
+                }
+                catch (InterruptedException e)
+                {
+                    return;
+                }
             }
-            catch (InterruptedException e)
+        }
+        finally {
+            if (pool != null)
             {
-                return;
+                pool.shutdown();
             }
         }
     } // end of run()
 
-    // setter for the delay data member to set the delay equal to specific value
+    // setter for the delay data member: the milliseconds of simulated time per step, not a sleep
     public void setDelay(int delay) {
         this.delay = delay;
     }
@@ -3,12 +3,19 @@
  *                                                        *
  * Author: Zubaidah Alqaisi                               *
  *                                                        *
- * Private data member:  color, radius, x, y, dx, dy,     *
- *                       bounce.                          *
- * Public data member: Ball(), move(), draw()             *
+ * Private data member:  system, index, bounce.           *
+ * Public data member: Ball(), getX(), getY(), getDx(),   *
+ *                     getDy(), setPosition(),            *
+ *                     setVelocity(), getRadius(),        *
+ *                     getColor(), move(), draw()         *
  *                                                        *
  * Purpose: This class represents a single bouncing ball  *
- *          in the animation.                             *
+ *          in the animation. It keeps no values of its   *
+ *          own: it is the index of the ball in the       *
+ *          ParticleSystem that holds it, and every getter*
+ *          and setter reads or writes the arrays there.  *
+ *          A view is cheap to make and may be thrown away*
+ *          at once.                                      *
  * ********************************************************/
 
 import javax.sound.sampled.Clip;
@@ -16,32 +23,59 @@ import java.awt.*;
 
 public class Ball {
 
-    // class data members
-    private Color color;
-    private int radius;
-    private int x;
-    private int y;
-    private int dx;
-    private int dy;
-    private Clip bounce;
-
-    // class constructor:  allowing you to initialize the ball.
-    public Ball(Color inColor, int inRadius, int inX, int inY, int inDx, int inDy, Clip inBounce)
+    // class data members: where the values of the ball are kept, and the sound of its bounces
+    private final ParticleSystem system;
+    private final int index;
+    private final Clip bounce;
+
+    // class constructor: a view of the ball at an index of a system, its bounces play the clip if there is one
+    public Ball(ParticleSystem inSystem, int inIndex, Clip inBounce)
     {
-        color = inColor;
-        radius = inRadius;
-        x = inX;
-        y = inY;
-        dx = inDx;
-        dy = inDy;
+        system = inSystem;
+        index = inIndex;
         bounce = inBounce;
 
     } // end of Ball()
 
+    // getters and setters for the values of the ball, kept in the system
+    public float getX() {
+        return system.getX(index);
+    }
+
+    public float getY() {
+        return system.getY(index);
+    }
+
+    public float getDx() {
+        return system.getDx(index);
+    }
+
+    public float getDy() {
+        return system.getDy(index);
+    }
+
+    public void setPosition(float inX, float inY) {
+        system.setPosition(index, inX, inY);
+    }
+
+    public void setVelocity(float inDx, float inDy) {
+        system.setVelocity(index, inDx, inDy);
+    }
+
+    public int getRadius() {
+        return system.getRadius(index);
+    }
+
+    public Color getColor() {
+        return system.getColor(index);
+    }
+
     /*********************************************************
      * Function: move()                                      *
      * Purpose: Determines the directions of the balls based *
-     *         on some calculations.                         *
+     *         on some calculations. If the ball is on or    *
+     *         past a wall of the panel it turns around, then*
+     *         it moves one step.                            *
      * @param d                                              *
      * Return: none void                                     *
      *
@@ -49,27 +83,10 @@ public class Ball {
 
     public void move(Dimension d)
     {
-       // If the x coordinate of the ball is less than or equal its radius OR greater than or equal the width
-       // of the panel minus the radius of the ball
-        if (x <= radius || x >= (d.width - radius) )
+        if (system.move(index, d) && bounce != null)
         {
-            //reverse the horizontal direction of the ball
-            dx *= -1;
             bounce.loop(1);   // start the clip sound and plays it once
-
-        }
-        //If the y coordinate of the ball is less than or equal its radius OR greater than or equal the
-        //height of the panel minus the radius of the ball
-        if (y <= radius || y >= (d.height - radius ))  // hieght of the panel
-        {
-            // reverse the vertical direction of the ball
-            dy *= -1;
-            bounce.loop(1);
         }
-        // add dx to x
-        x += dx;
-        // add dy to y
-        y += dy;
 
     } // end of move()
 
@@ -86,10 +103,30 @@ public class Ball {
 
     public void draw(Graphics g)
     {
+        draw(g, 1.0);
+
+    } // end of draw()
+
+    /***************************************************
+     * Function: draw()                                *
+     * Purpose: Draws the ball between its position    *
+     *          before the last move and its position  *
+     *          now, so the motion looks smooth when   *
+     *          frames do not line up with the steps.  *
+     * @param g                                        *
+     * @param alpha how far the next step has come, 0  *
+     *        is the previous position and 1 this one  *
+     * Return: none void                               *
+     */
+
+    public void draw(Graphics g, double alpha)
+    {
+        int radius = getRadius();
+
         // set the color of the balls
-        g.setColor(color);
+        g.setColor(getColor());
         // calling fillOval() to draw the ball
-        g.fillOval(x - radius, y - radius, radius * 2, radius * 2);
+        g.fillOval(system.drawX(index, alpha) - radius, system.drawY(index, alpha) - radius, radius * 2, radius * 2);
 
     } // end of draw()
 
@@ -0,0 +1,275 @@
+/**********************************************************
+ * Class: CatalogSnapshot                                 *
+ *                                                        *
+ * Author: Zubaidah Alqaisi                               *
+ *                                                        *
+ * Private members: SNAPSHOT_FILE, MAGIC, VERSION, file,  *
+ *                  writer, failure                       *
+ *                                                        *
+ * Public members: CatalogSnapshot(), getShared(), load(),*
+ *                 save(), getFailure()                   *
+ *                                                        *
+ * Purpose: Keeps the albums the table shows in one binary*
+ *          file, so the next start can show them before  *
+ *          anything is downloaded. Every string is stored*
+ *          once in a table at the front of the file as a *
+ *          length and its UTF-8 bytes, and the albums of *
+ *          each feed are four int ids into that table.   *
+ *          The file is memory mapped to be read back and *
+ *          written on a background thread. A snapshot    *
+ *          that cannot be read or written is only noted  *
+ *          in getFailure() for the panel to report.      *
+ *                                                        *
+ *          Layout, all ints big-endian:                  *
+ *            int magic "ALBS", int version               *
+ *            int strings, per string: int bytes, bytes   *
+ *            int feeds, per feed: int type, int limit,   *
+ *              byte explicit, int albums, per album:     *
+ *              int id, int title, int artist, int category*
+ *          A string id of -1 stands for a missing value. *
+ *********************************************************/
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class CatalogSnapshot {
+
+    // where the shared snapshot is kept, can be changed with -Dcatalog.snapshotFile
+    private static final String SNAPSHOT_FILE = System.getProperty("catalog.snapshotFile",
+            System.getProperty("user.home") + File.separator + ".xmldownloader" + File.separator + "catalog.snap");
+
+    // first values in the file, the version is changed when the layout changes
+    private static final int MAGIC = 0x414C4253;     // "ALBS"
+    private static final int VERSION = 1;
+
+    // the snapshot the application uses
+    private static CatalogSnapshot shared;
+
+    // the snapshot file, and the thread it is written on
+    private final File file;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "catalog-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // why the last load or save failed, null if it worked
+    private volatile String failure;
+
+    // class constructor
+    public CatalogSnapshot(File file)
+    {
+        this.file = file;
+
+    } // end of CatalogSnapshot()
+
+    // the snapshot every part of the application shares
+    public static synchronized CatalogSnapshot getShared()
+    {
+        if (shared == null)
+        {
+            shared = new CatalogSnapshot(new File(SNAPSHOT_FILE));
+        }
+        return shared;
+    }
+
+    /*******************************************************
+     * Function: load()                                    *
+     * Purpose: Maps the snapshot file and reads the albums*
+     *          of every feed back. The strings are decoded*
+     *          once, so albums that share an artist share *
+     *          its String.                                *
+     * Argument: none                                      *
+     * Return: the albums of every feed in the order they  *
+     *         were shown, empty if there is no usable file*
+     */
+
+    public Map<FeedKey, List<Album>> load()
+    {
+        Map<FeedKey, List<Album>> catalog = new LinkedHashMap<FeedKey, List<Album>>();
+        if (!file.isFile())
+        {
+            return catalog;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            // a file from another version is ignored and written again after the next download
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+            {
+                return catalog;
+            }
+
+            // the string table, one reusable array for the bytes
+            String[] strings = new String[count(buffer, 4)];
+            byte[] bytes = new byte[256];
+            for (int i = 0; i < strings.length; i++)
+            {
+                int length = count(buffer, 1);
+                if (length > bytes.length)
+                {
+                    bytes = new byte[Math.max(bytes.length * 2, length)];
+                }
+                buffer.get(bytes, 0, length);
+                strings[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+            }
+
+            // the feeds and their albums
+            for (int feeds = count(buffer, 13); feeds > 0; feeds--)
+            {
+                FeedKey feed = new FeedKey(string(strings, buffer.getInt()), string(strings, buffer.getInt()),
+                        buffer.get() != 0);
+
+                int count = count(buffer, 16);
+                List<Album> albums = new ArrayList<Album>(count);
+                for (int i = 0; i < count; i++)
+                {
+                    albums.add(new Album(string(strings, buffer.getInt()), string(strings, buffer.getInt()),
+                            string(strings, buffer.getInt()), string(strings, buffer.getInt())));
+                }
+                catalog.put(feed, albums);
+            }
+            return catalog;
+        }
+        catch (IOException | RuntimeException e)
+        {
+            // a broken file is the same as no file, whatever is wrong with it
+            failure = "catalog snapshot not read: " + e;
+            catalog.clear();
+            return catalog;
+        }
+
+    } // end of load()
+
+    /*******************************************************
+     * Function: save()                                    *
+     * Purpose: Writes the albums of every feed to the     *
+     *          snapshot on the background thread. The     *
+     *          file is written next to the old one and    *
+     *          moved over it, so a crash never leaves half*
+     *          a snapshot.                                *
+     * @param catalog the albums of every feed, in the     *
+     *        order they are shown; it must not change     *
+     *        after it is handed over                      *
+     * Return: none void                                   *
+     */
+
+    public void save(Map<FeedKey, List<Album>> catalog)
+    {
+        writer.execute(() -> {
+            try {
+                write(catalog);
+                failure = null;
+            }
+            catch (IOException e)
+            {
+                failure = "catalog snapshot not written: " + e.getMessage();
+            }
+        });
+
+    } // end of save()
+
+    // why the last load or save failed, null if it worked; a save is finished some time after save() returns
+    public String getFailure() {
+        return failure;
+    }
+
+    // write the snapshot file, called on the background thread
+    private void write(Map<FeedKey, List<Album>> catalog) throws IOException
+    {
+        // every distinct string gets an id
+        StringTable strings = new StringTable();
+        for (Map.Entry<FeedKey, List<Album>> entry : catalog.entrySet())
+        {
+            strings.intern(entry.getKey().getType());
+            strings.intern(entry.getKey().getLimit());
+            for (Album album : entry.getValue())
+            {
+                strings.intern(album.getEntryId());
+                strings.intern(album.getAlbumName());
+                strings.intern(album.getSingerName());
+                strings.intern(album.getMusicType());
+            }
+        }
+
+        File directory = file.getAbsoluteFile().getParentFile();
+        directory.mkdirs();
+        File part = File.createTempFile("catalog", ".part", directory);
+
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(part))))
+            {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+
+                out.writeInt(strings.size());
+                for (int i = 0; i < strings.size(); i++)
+                {
+                    byte[] bytes = strings.get(i).getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+
+                out.writeInt(catalog.size());
+                for (Map.Entry<FeedKey, List<Album>> entry : catalog.entrySet())
+                {
+                    FeedKey feed = entry.getKey();
+                    out.writeInt(strings.intern(feed.getType()));
+                    out.writeInt(strings.intern(feed.getLimit()));
+                    out.writeByte(feed.isExplicit() ? 1 : 0);
+
+                    out.writeInt(entry.getValue().size());
+                    for (Album album : entry.getValue())
+                    {
+                        out.writeInt(strings.intern(album.getEntryId()));
+                        out.writeInt(strings.intern(album.getAlbumName()));
+                        out.writeInt(strings.intern(album.getSingerName()));
+                        out.writeInt(strings.intern(album.getMusicType()));
+                    }
+                }
+            }
+            Files.move(part.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            part.delete();      // only still there if writing failed
+        }
+    }
+
+    // read a count of things that take at least the given bytes each, a count the rest of the file cannot
+    // hold means the file is broken
+    private static int count(ByteBuffer buffer, int bytesEach) throws IOException
+    {
+        int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining() / bytesEach)
+        {
+            throw new IOException("count " + count + " at " + (buffer.position() - 4) + " is out of range");
+        }
+        return count;
+    }
+
+    // the string of an id, null for -1
+    private static String string(String[] strings, int id)
+    {
+        return id < 0 ? null : strings[id];
+    }
+
+} // end of the CatalogSnapshot class
@@ -0,0 +1,434 @@
+/**********************************************************
+ * Class: FeedCache                                       *
+ *                                                        *
+ * Author: Zubaidah Alqaisi                               *
+ *                                                        *
+ * Private members: directory, maxBytes, totalBytes,      *
+ *                  entries, failedWrites                 *
+ *                                                        *
+ * Public members: FeedCache(), getShared(), lookup(),    *
+ *                 store(), getFailedWrites(), Entry      *
+ *                                                        *
+ * Purpose: Keeps the last download of every feed on disk *
+ *          keyed by its URL: the ETag and Last-Modified  *
+ *          validators, and the albums it parsed to. The  *
+ *          next request sends the validators, and on a   *
+ *          304 the albums are read back without          *
+ *          downloading or parsing. The least recently    *
+ *          used feeds are deleted once the cache is too  *
+ *          big. A cache that cannot be written only costs*
+ *          the next download its 304.                    *
+ *********************************************************/
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class FeedCache {
+
+    // where the shared cache lives and how big it may grow, can be changed with -Dfeed.cacheDir and -Dfeed.cacheMaxBytes
+    private static final String CACHE_DIR = System.getProperty("feed.cacheDir",
+            System.getProperty("user.home") + File.separator + ".xmldownloader" + File.separator + "feeds");
+    private static final long CACHE_MAX_BYTES = Long.getLong("feed.cacheMaxBytes", 32L * 1024 * 1024);
+
+    // first value in every index file, changed when the layout changes
+    private static final int INDEX_VERSION = 3;
+
+    // the cache every download uses
+    private static FeedCache shared;
+
+    // the cache folder, its size limit and its current size
+    private final File directory;
+    private final long maxBytes;
+    private long totalBytes;
+
+    // size on disk of every entry, by file name, least recently used first
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<String, Long>(16, 0.75f, true);
+
+    // downloads that could not be saved
+    private long failedWrites = 0;
+
+    /******************************************************
+     * Class: Entry                                       *
+     * Purpose: The validators of a cached feed, the      *
+     *          fields it was read with and the albums it *
+     *          was parsed to.                            *
+     */
+
+    public static class Entry {
+
+        private final String eTag;
+        private final String lastModified;
+        private final Set<Album.Field> fields;
+        private final List<Album> albums;
+
+        Entry(String eTag, String lastModified, Set<Album.Field> fields, List<Album> albums)
+        {
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.fields = fields;
+            this.albums = albums;
+        }
+
+        // getters for the Entry class data members, validators are null when the server sent none
+        public String getETag() {
+            return eTag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        public Set<Album.Field> getFields() {
+            return fields;
+        }
+
+        public List<Album> getAlbums() {
+            return albums;
+        }
+
+    } // end of Entry class
+
+    /*******************************************************
+     * Function: FeedCache()                               *
+     * Purpose: constructor: opens the cache folder and    *
+     *          orders the entries found there by the time *
+     *          they were last used. Files left by a crash *
+     *          in the middle of a write, and the feed     *
+     *          bodies older versions kept, are deleted.   *
+     * @param directory                                    *
+     * @param maxBytes                                     *
+     * Return: none                                        *
+     */
+
+    public FeedCache(File directory, long maxBytes)
+    {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        directory.mkdirs();
+
+        File[] leftovers = directory.listFiles((dir, name) -> name.endsWith(".part") || name.endsWith(".xml"));
+        if (leftovers != null)
+        {
+            for (File leftover : leftovers)
+            {
+                leftover.delete();
+            }
+        }
+
+        // the index file is touched on every use, so its time is the last use
+        File[] indexes = directory.listFiles((dir, name) -> name.endsWith(".idx"));
+        if (indexes != null)
+        {
+            Arrays.sort(indexes, Comparator.comparingLong(File::lastModified));
+            for (File index : indexes)
+            {
+                String name = index.getName().substring(0, index.getName().length() - 4);
+                long size = index.length();
+                entries.put(name, size);
+                totalBytes += size;
+            }
+        }
+
+    } // end of FeedCache()
+
+    /*******************************************************
+     * Function: getShared()                               *
+     * Purpose: Returns the cache shared by all downloads, *
+     *          creating it the first time.                *
+     * Argument: none                                      *
+     * Return: the shared cache                            *
+     */
+
+    public static synchronized FeedCache getShared()
+    {
+        if (shared == null)
+        {
+            shared = new FeedCache(new File(CACHE_DIR), CACHE_MAX_BYTES);
+        }
+        return shared;
+
+    } // end of getShared()
+
+    /*******************************************************
+     * Function: lookup()                                  *
+     * Purpose: Reads the cached entry of a feed and marks *
+     *          it as the most recently used. An entry that*
+     *          cannot be read back is deleted.            *
+     * @param url                                          *
+     * Return: the entry, or null if the feed is not cached*
+     */
+
+    public synchronized Entry lookup(String url)
+    {
+        String name = fileName(url);
+        if (entries.get(name) == null)      // get() moves the entry to the most recently used end
+        {
+            return null;
+        }
+
+        File index = new File(directory, name + ".idx");
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(index))))
+        {
+            // a different version or a hash collision is treated as a miss
+            if (in.readInt() != INDEX_VERSION || !in.readUTF().equals(url))
+            {
+                return null;
+            }
+
+            String eTag = readOptional(in);
+            String lastModified = readOptional(in);
+            Set<Album.Field> fields = fieldsOf(in.readInt());
+
+            // a count the file is too short for means the entry is broken
+            long length = index.length();
+            int count = count(in.readInt(), length, 5);
+            List<Album> albums = new ArrayList<Album>(count);
+            for (int i = 0; i < count; i++)
+            {
+                String id = readOptional(in);
+                String title = readOptional(in);
+                String artist = readOptional(in);
+                String category = readOptional(in);
+
+                Album.Details details = null;
+                if (in.readBoolean())
+                {
+                    int rank = in.readInt();
+                    String releaseDate = readOptional(in);
+                    String price = readOptional(in);
+                    String currency = readOptional(in);
+                    List<String> images = new ArrayList<String>();
+                    for (int image = count(in.readInt(), length, 2); image > 0; image--)
+                    {
+                        images.add(in.readUTF());
+                    }
+                    details = new Album.Details(rank, releaseDate, price, currency, images);
+                }
+                albums.add(new Album(id, title, artist, category, details));
+            }
+
+            index.setLastModified(System.currentTimeMillis());   // remember the use across restarts
+            return new Entry(eTag, lastModified, fields, albums);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            // a broken entry is dropped so it is downloaded again
+            remove(name);
+            return null;
+        }
+
+    } // end of lookup()
+
+    /*******************************************************
+     * Function: store()                                   *
+     * Purpose: Saves the validators and albums of a feed  *
+     *          that was just downloaded, replacing the    *
+     *          entry it had. The index is written to a    *
+     *          temporary file and moved into place, so a  *
+     *          crash leaves the old entry or none. A write*
+     *          that fails is counted and the feed is just *
+     *          not cached.                                *
+     * @param url                                          *
+     * @param eTag                                         *
+     * @param lastModified                                 *
+     * @param fields the fields the albums were read with  *
+     * @param albums                                       *
+     * Return: true if the entry was saved                 *
+     */
+
+    public boolean store(String url, String eTag, String lastModified, Set<Album.Field> fields, List<Album> albums)
+    {
+        String name = fileName(url);
+        File part = null;
+        try {
+            part = File.createTempFile("feed", ".part", directory);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(part))))
+            {
+                out.writeInt(INDEX_VERSION);
+                out.writeUTF(url);
+                writeOptional(out, eTag);
+                writeOptional(out, lastModified);
+                out.writeInt(maskOf(fields));
+                out.writeInt(albums.size());
+                for (Album album : albums)
+                {
+                    writeOptional(out, album.getEntryId());
+                    writeOptional(out, album.getAlbumName());
+                    writeOptional(out, album.getSingerName());
+                    writeOptional(out, album.getMusicType());
+
+                    // the details only when they were read
+                    out.writeBoolean(album.getDetails() != null);
+                    if (album.getDetails() != null)
+                    {
+                        out.writeInt(album.getRank());
+                        writeOptional(out, album.getReleaseDate());
+                        writeOptional(out, album.getPrice());
+                        writeOptional(out, album.getCurrency());
+                        out.writeInt(album.getImageUrls().size());
+                        for (String image : album.getImageUrls())
+                        {
+                            out.writeUTF(image);
+                        }
+                    }
+                }
+            }
+
+            synchronized (this)
+            {
+                remove(name);
+                File index = new File(directory, name + ".idx");
+                Files.move(part.toPath(), index.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+                long size = index.length();
+                entries.put(name, size);
+                totalBytes += size;
+                evict();
+            }
+            return true;
+        }
+        catch (IOException e)
+        {
+            if (part != null)
+            {
+                part.delete();
+            }
+            synchronized (this)
+            {
+                failedWrites++;
+            }
+            return false;
+        }
+
+    } // end of store()
+
+    // the downloads that could not be saved since the start
+    public synchronized long getFailedWrites() {
+        return failedWrites;
+    }
+
+    /*******************************************************
+     * Function: evict()                                   *
+     * Purpose: Deletes the least recently used feeds until*
+     *          the cache fits in its size limit again.    *
+     * Argument: none                                      *
+     * Return: none void                                   *
+     */
+
+    private void evict()
+    {
+        Iterator<Map.Entry<String, Long>> oldest = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && oldest.hasNext())
+        {
+            Map.Entry<String, Long> entry = oldest.next();
+            oldest.remove();
+            totalBytes -= entry.getValue();
+            deleteFiles(entry.getKey());
+        }
+
+    } // end of evict()
+
+    // drop one entry from the cache
+    private void remove(String name)
+    {
+        Long size = entries.remove(name);
+        if (size != null)
+        {
+            totalBytes -= size;
+        }
+        deleteFiles(name);
+    }
+
+    private void deleteFiles(String name)
+    {
+        new File(directory, name + ".idx").delete();
+    }
+
+    // the file name of a feed is the SHA-1 of its URL
+    private static String fileName(String url)
+    {
+        try {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("SHA-1").digest(url.getBytes(StandardCharsets.UTF_8)))
+            {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            // every JDK has SHA-1
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // a count read from an index, checked against the size of the file; every item takes bytesEach at least
+    private static int count(int count, long length, int bytesEach) throws IOException
+    {
+        if (count < 0 || (long) count * bytesEach > length)
+        {
+            throw new IOException("bad count " + count);
+        }
+        return count;
+    }
+
+    // helpers to store strings that may be null
+    private static void writeOptional(DataOutputStream out, String value) throws IOException
+    {
+        out.writeBoolean(value != null);
+        if (value != null)
+        {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readOptional(DataInputStream in) throws IOException
+    {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    // helpers to store a set of fields as one bit per field
+    private static int maskOf(Set<Album.Field> fields)
+    {
+        int mask = 0;
+        for (Album.Field field : fields)
+        {
+            mask |= 1 << field.ordinal();
+        }
+        return mask;
+    }
+
+    private static Set<Album.Field> fieldsOf(int mask)
+    {
+        EnumSet<Album.Field> fields = EnumSet.noneOf(Album.Field.class);
+        for (Album.Field field : Album.Field.values())
+        {
+            if ((mask & 1 << field.ordinal()) != 0)
+            {
+                fields.add(field);
+            }
+        }
+        return fields;
+    }
+
+} // end of the FeedCache class
@@ -0,0 +1,157 @@
+/**********************************************************
+ * Class: FeedDiff                                        *
+ *                                                        *
+ * Author: Zubaidah Alqaisi                               *
+ *                                                        *
+ * Private members: feed, previous, previousRanks, seen,  *
+ *                  count, changed                        *
+ *                                                        *
+ * Public members: FeedDiff(), next(), finish(), restore()*
+ *                                                        *
+ * Purpose: Compares a feed, one album at a time as it is *
+ *          parsed, with the albums the panel shows for it*
+ *          and turns the differences into AlbumChanges.  *
+ *          Albums are matched on their atom entry id. An *
+ *          album at the same rank with the same values   *
+ *          gives no change at all. A download that fails *
+ *          halfway is undone with restore().             *
+ *********************************************************/
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+public class FeedDiff {
+
+    // the feed, its albums from last time, and the rank each of them had
+    private final FeedKey feed;
+    private final List<Album> previous;
+    private final Map<String, Integer> previousRanks = new HashMap<String, Integer>();
+
+    // keys of the albums in the new download, and how many there are
+    private final Set<String> seen = new HashSet<String>();
+    private int count = 0;
+
+    // the ranks a change was sent for
+    private final BitSet changed = new BitSet();
+
+    /*******************************************************
+     * Function: FeedDiff()                                *
+     * Purpose: constructor: indexes the previous albums by*
+     *          key.                                       *
+     * @param feed                                         *
+     * @param previous the albums shown before, in rank    *
+     *        order                                        *
+     * Return: none                                        *
+     */
+
+    public FeedDiff(FeedKey feed, List<Album> previous)
+    {
+        this.feed = feed;
+        this.previous = previous;
+
+        for (int rank = 0; rank < previous.size(); rank++)
+        {
+            previousRanks.put(previous.get(rank).getKey(), rank);
+        }
+
+    } // end of FeedDiff()
+
+    /*******************************************************
+     * Function: next()                                    *
+     * Purpose: Compares the next album of the download    *
+     *          with what was at its rank before.          *
+     * @param album                                        *
+     * @param changes where a change is sent, if any       *
+     * Return: none void                                   *
+     */
+
+    public void next(Album album, Consumer<AlbumChange> changes)
+    {
+        int rank = count++;
+        String key = album.getKey();
+        seen.add(key);
+
+        Album before = rank < previous.size() ? previous.get(rank) : null;
+        Integer oldRank = previousRanks.get(key);
+
+        if (before != null && before.getKey().equals(key))
+        {
+            // same album at the same rank, only publish if a value changed
+            if (!before.sameAs(album))
+            {
+                changed.set(rank);
+                changes.accept(new AlbumChange(AlbumChange.Kind.UPDATED, feed, rank, rank, album));
+            }
+        }
+        else if (oldRank != null)
+        {
+            changed.set(rank);
+            changes.accept(new AlbumChange(AlbumChange.Kind.MOVED, feed, rank, oldRank, album));
+        }
+        else
+        {
+            changed.set(rank);
+            changes.accept(new AlbumChange(AlbumChange.Kind.ADDED, feed, rank, -1, album));
+        }
+
+    } // end of next()
+
+    /*******************************************************
+     * Function: finish()                                  *
+     * Purpose: Sends a REMOVED change for every album that*
+     *          is gone, a RESIZED change if the feed now  *
+     *          has fewer albums than before, and FINISHED.*
+     * @param changes                                      *
+     * Return: none void                                   *
+     */
+
+    public void finish(Consumer<AlbumChange> changes)
+    {
+        for (int rank = 0; rank < previous.size(); rank++)
+        {
+            Album album = previous.get(rank);
+            if (!seen.contains(album.getKey()))
+            {
+                changes.accept(new AlbumChange(AlbumChange.Kind.REMOVED, feed, -1, rank, album));
+            }
+        }
+
+        if (count < previous.size())
+        {
+            changes.accept(new AlbumChange(AlbumChange.Kind.RESIZED, feed, count, previous.size(), null));
+        }
+        changes.accept(new AlbumChange(AlbumChange.Kind.FINISHED, feed, -1, -1, null));
+
+    } // end of finish()
+
+    /*******************************************************
+     * Function: restore()                                 *
+     * Purpose: Sends the changes that undo the ones next()*
+     *          sent, for a download that failed halfway:  *
+     *          every rank that changed gets its old album *
+     *          back, ranks past the old end are cut off,  *
+     *          then FINISHED.                             *
+     * @param changes                                      *
+     * Return: none void                                   *
+     */
+
+    public void restore(Consumer<AlbumChange> changes)
+    {
+        for (int rank = changed.nextSetBit(0); rank >= 0 && rank < previous.size(); rank = changed.nextSetBit(rank + 1))
+        {
+            changes.accept(new AlbumChange(AlbumChange.Kind.UPDATED, feed, rank, rank, previous.get(rank)));
+        }
+        if (count > previous.size())
+        {
+            changes.accept(new AlbumChange(AlbumChange.Kind.RESIZED, feed, previous.size(), count, null));
+        }
+        changes.accept(new AlbumChange(AlbumChange.Kind.FINISHED, feed, -1, -1, null));
+
+    } // end of restore()
+
+} // end of the FeedDiff class
@@ -0,0 +1,53 @@
+/**********************************************************
+ * Class: FeedException                                   *
+ *                                                        *
+ * Author: Zubaidah Alqaisi                               *
+ *                                                        *
+ * Private members: url, status                           *
+ *                                                        *
+ * Public members: FeedException(), getUrl(), getStatus() *
+ *                                                        *
+ * Purpose: A feed that could not be downloaded, with a   *
+ *          message that can be shown to the user as it   *
+ *          is: the server answered with an error status, *
+ *          or its host is failing and is not being asked *
+ *          for a while.                                  *
+ *********************************************************/
+
+import java.io.IOException;
+
+public class FeedException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    // the feed, and the HTTP status the server answered with, 0 if it did not answer
+    private final String url;
+    private final int status;
+
+    /*******************************************************
+     * Function: FeedException()                           *
+     * Purpose: constructor                                *
+     * @param message what went wrong, for the user        *
+     * @param url                                          *
+     * @param status the HTTP status, or 0                 *
+     * Return: none                                        *
+     */
+
+    public FeedException(String message, String url, int status)
+    {
+        super(message);
+        this.url = url;
+        this.status = status;
+
+    } // end of FeedException()
+
+    // getters for the FeedException class data members
+    public String getUrl() {
+        return url;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+} // end of the FeedException class
@@ -0,0 +1,269 @@
+/**********************************************************
+ * Class: FeedFetchEngine                                 *
+ *                                                        *
+ * Author: Zubaidah Alqaisi                               *
+ *                                                        *
+ * Private members: executor, permits, maxParallel        *
+ *                                                        *
+ * Public members: FeedFetchEngine(), fetchAll(),         *
+ *                 shutdown(), FeedListener, FeedResult   *
+ *                                                        *
+ * Purpose: Downloads many feeds at the same time on a    *
+ *          bounded executor. Virtual threads are used    *
+ *          when the JDK has them, otherwise a fixed pool *
+ *          of daemon threads. Albums are handed to a     *
+ *          listener as soon as they are parsed and every *
+ *          feed reports how long it took. Interrupting   *
+ *          the thread in fetchAll() stops every feed at  *
+ *          once, including those blocked on a read.      *
+ *********************************************************/
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+public class FeedFetchEngine {
+
+    /******************************************************
+     * Interface: FeedListener                            *
+     * Purpose: Receives albums and finished feeds. It is *
+     *          called from the worker threads, so it must*
+     *          be thread safe.                           *
+     */
+
+    public interface FeedListener {
+        void albumFound(FeedKey feed, Album album);
+        void feedFinished(FeedResult result);
+    }
+
+    /******************************************************
+     * Class: FeedResult                                  *
+     * Purpose: Holds the outcome of one feed: its albums,*
+     *          the wall-clock time it took, the bytes it *
+     *          took on the network and after decoding,   *
+     *          and the error if it failed.               *
+     */
+
+    public static class FeedResult {
+
+        private final FeedKey feed;
+        private final List<Album> albums;
+        private final long nanos;
+        private final Exception error;
+        private final long wireBytes;
+        private final long bytes;
+
+        public FeedResult(FeedKey feed, List<Album> albums, long nanos, Exception error)
+        {
+            this(feed, albums, nanos, error, 0, 0);
+        }
+
+        public FeedResult(FeedKey feed, List<Album> albums, long nanos, Exception error, long wireBytes, long bytes)
+        {
+            this.feed = feed;
+            this.albums = albums;
+            this.nanos = nanos;
+            this.error = error;
+            this.wireBytes = wireBytes;
+            this.bytes = bytes;
+        }
+
+        // getters for the FeedResult class data members
+        public FeedKey getFeed() {
+            return feed;
+        }
+
+        public String getUrl() {
+            return feed.toUrl();
+        }
+
+        public List<Album> getAlbums() {
+            return albums;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public Exception getError() {
+            return error;
+        }
+
+        // the body as it came over the network, 0 if the cached copy was used
+        public long getWireBytes() {
+            return wireBytes;
+        }
+
+        // the body after decompression
+        public long getBytes() {
+            return bytes;
+        }
+
+    } // end of FeedResult class
+
+    // the threads the feeds run on, and the permits that bound how many run at once
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final int maxParallel;
+
+    /*******************************************************
+     * Function: FeedFetchEngine()                         *
+     * Purpose: constructor: creates the executor.         *
+     * @param maxParallel most feeds downloaded at once    *
+     * Return: none                                        *
+     */
+
+    public FeedFetchEngine(int maxParallel)
+    {
+        this.maxParallel = maxParallel;
+        permits = new Semaphore(maxParallel);
+        executor = createExecutor(maxParallel);
+
+    } // end of FeedFetchEngine()
+
+    /*******************************************************
+     * Function: createExecutor()                          *
+     * Purpose: Uses a virtual thread per task when the JDK*
+     *          offers it (looked up by reflection so the  *
+     *          code still builds on older JDKs), otherwise*
+     *          a fixed pool of daemon threads.            *
+     * @param maxParallel                                  *
+     * Return: the executor                                *
+     */
+
+    private static ExecutorService createExecutor(int maxParallel)
+    {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            // no virtual threads on this JDK
+        }
+
+        return Executors.newFixedThreadPool(maxParallel, runnable -> {
+            Thread thread = new Thread(runnable, "feed-fetch");
+            thread.setDaemon(true);   // never keep the application alive
+            return thread;
+        });
+
+    } // end of createExecutor()
+
+    /*******************************************************
+     * Function: fetchAll()                                *
+     * Purpose: Downloads every feed in parallel, at most  *
+     *          maxParallel at a time, and waits for all of*
+     *          them. A failing feed does not stop others. *
+     *          If the calling thread is interrupted, every*
+     *          worker is interrupted and the body it reads*
+     *          is closed, so none of them is left blocked *
+     *          on a stalled connection.                   *
+     * @param feeds                                        *
+     * @param listener                                     *
+     * @throws InterruptedException if the download was    *
+     *         cancelled                                   *
+     * Return: one result per feed, in the same order      *
+     */
+
+    public List<FeedResult> fetchAll(List<FeedKey> feeds, FeedListener listener) throws InterruptedException
+    {
+        List<Future<FeedResult>> futures = new ArrayList<Future<FeedResult>>();
+        Set<Thread> running = ConcurrentHashMap.newKeySet();    // the workers inside fetchOne()
+
+        // start every feed, the semaphore keeps the number of open connections bounded
+        for (FeedKey feed : feeds)
+        {
+            futures.add(executor.submit(fetchOne(feed, listener, running)));
+        }
+
+        // collect the results in the order the feeds were given
+        List<FeedResult> results = new ArrayList<FeedResult>();
+        try {
+            for (Future<FeedResult> future : futures)
+            {
+                results.add(future.get());
+            }
+        }
+        catch (ExecutionException e)
+        {
+            // fetchOne() catches everything, so this only happens on an Error
+            throw new IllegalStateException(e.getCause());
+        }
+        catch (InterruptedException e)
+        {
+            // stop the feeds that are still running before giving up: the interrupt ends a wait, closing
+            // the body ends a read
+            for (Future<FeedResult> future : futures)
+            {
+                future.cancel(true);
+            }
+            for (Thread thread : running)
+            {
+                FeedReader.abort(thread);
+            }
+            throw e;
+        }
+
+        return results;
+
+    } // end of fetchAll()
+
+    /*******************************************************
+     * Function: fetchOne()                                *
+     * Purpose: Builds the task that downloads one feed,   *
+     *          times it and counts its bytes.             *
+     * @param feed                                         *
+     * @param listener                                     *
+     * @param running the threads running a task, this one *
+     *        is in it while it downloads                  *
+     * Return: the task                                    *
+     */
+
+    private Callable<FeedResult> fetchOne(FeedKey feed, FeedListener listener, Set<Thread> running)
+    {
+        return () -> {
+            permits.acquire();
+            long start = System.nanoTime();
+            FeedResult result;
+            FeedHttpClient.Transfer transfer = new FeedHttpClient.Transfer();
+            running.add(Thread.currentThread());
+            try {
+                List<Album> albums = FeedReader.read(feed.toUrl(), feed.getLimitCount(), Album.BASIC_FIELDS,
+                        album -> listener.albumFound(feed, album), transfer);
+                result = new FeedResult(feed, albums, System.nanoTime() - start, null,
+                        transfer.getWireBytes(), transfer.getBytes());
+            }
+            catch (Exception e)
+            {
+                result = new FeedResult(feed, new ArrayList<Album>(), System.nanoTime() - start, e,
+                        transfer.getWireBytes(), transfer.getBytes());
+            }
+            finally {
+                running.remove(Thread.currentThread());
+                permits.release();
+            }
+
+            listener.feedFinished(result);
+            return result;
+        };
+
+    } // end of fetchOne()
+
+    // getter for the most feeds downloaded at once
+    public int getMaxParallel() {
+        return maxParallel;
+    }
+
+    // stop the worker threads
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+} // end of the FeedFetchEngine class
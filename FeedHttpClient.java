@@ -0,0 +1,991 @@
+/**********************************************************
+ * Class: FeedHttpClient                                  *
+ *                                                        *
+ * Author: Zubaidah Alqaisi                               *
+ *                                                        *
+ * Private members: WATCHDOG, client, readTimeout, hosts, *
+ *                  requests,                             *
+ *                  tlsRequests, newConnections,          *
+ *                  http2Responses, retries,              *
+ *                  hedgedRequests, hedgeWins, rejected,  *
+ *                  wireBytes, decodedBytes               *
+ *                                                        *
+ * Public members: FeedHttpClient(), getShared(),         *
+ *                 fetch(), decode(), discard(),          *
+ *                 getRequests(),                         *
+ *                 getNewConnections(),                   *
+ *                 getReusedConnections(),                *
+ *                 getHttp2Responses(), getRetries(),     *
+ *                 getHedgedRequests(), getHedgeWins(),   *
+ *                 getRejected(), getWireBytes(),         *
+ *                 getDecodedBytes(), Transfer            *
+ *                                                        *
+ * Purpose: One HTTP client shared by every feed download.*
+ *          It is built on java.net.http.HttpClient, which*
+ *          keeps connections alive and reuses them, and  *
+ *          speaks HTTP/2 when the server offers it. The  *
+ *          TLS context is wrapped so every new connection*
+ *          is counted, which tells how many requests went*
+ *          over a reused connection. fetch() adds the    *
+ *          resilience every feed download goes through:  *
+ *          5xx and 429 answers and network errors are    *
+ *          retried with capped exponential backoff and   *
+ *          jitter (or after the Retry-After the server   *
+ *          asks for), a second request is sent when the  *
+ *          first is slower than the host usually is, and *
+ *          a host that keeps failing is not asked again  *
+ *          for a while, so it cannot hold every worker.  *
+ *          fetch() also asks for a gzip or deflate body, *
+ *          which decode() unpacks while it is parsed. A  *
+ *          body that stops sending bytes for longer than *
+ *          the read timeout is closed by a watchdog, so a*
+ *          stalled server cannot hold a worker forever.  *
+ *********************************************************/
+
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLContextSpi;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLServerSocketFactory;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.KeyManagementException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+public class FeedHttpClient {
+
+    // timeouts used by the shared client, can be changed with -Dfeed.connectTimeoutMs and -Dfeed.readTimeoutMs
+    private static final long CONNECT_TIMEOUT_MS = Long.getLong("feed.connectTimeoutMs", 5000);
+    private static final long READ_TIMEOUT_MS = Long.getLong("feed.readTimeoutMs", 15000);
+
+    // the compressions fetch() asks for, -Dfeed.acceptEncoding=identity asks for a plain body
+    private static final String ACCEPT_ENCODING = System.getProperty("feed.acceptEncoding", "gzip, deflate");
+
+    // retries of a failing request, can be changed with -Dfeed.maxAttempts, -Dfeed.backoffBaseMs,
+    // -Dfeed.backoffMaxMs and -Dfeed.retryAfterMaxMs (a longer Retry-After is not waited for)
+    private static final int MAX_ATTEMPTS = Integer.getInteger("feed.maxAttempts", 3);
+    private static final long BACKOFF_BASE_MS = Long.getLong("feed.backoffBaseMs", 250);
+    private static final long BACKOFF_MAX_MS = Long.getLong("feed.backoffMaxMs", 4000);
+    private static final long RETRY_AFTER_MAX_MS = Long.getLong("feed.retryAfterMaxMs", 30000);
+
+    // a second request is sent when the first takes longer than 95% of the host's answers did, but not
+    // sooner than -Dfeed.hedgeMinMs; -Dfeed.hedge=false turns it off
+    private static final boolean HEDGE = !"false".equalsIgnoreCase(System.getProperty("feed.hedge"));
+    private static final long HEDGE_MIN_MS = Long.getLong("feed.hedgeMinMs", 50);
+
+    // -Dfeed.breakerFailures failures in a row stop the requests to a host for -Dfeed.breakerOpenMs
+    private static final int BREAKER_FAILURES = Integer.getInteger("feed.breakerFailures", 5);
+    private static final long BREAKER_OPEN_MS = Long.getLong("feed.breakerOpenMs", 30000);
+
+    // a body that is not wanted is read up to -Dfeed.discardMaxBytes to keep its connection, and given
+    // -Dfeed.discardIdleMs for every read; a bigger or slower one drops the connection instead
+    private static final long DISCARD_MAX_BYTES = Long.getLong("feed.discardMaxBytes", 64 * 1024);
+    private static final long DISCARD_IDLE_MS = Long.getLong("feed.discardIdleMs", 1000);
+
+    // closes the bodies that stopped sending
+    private static final ScheduledThreadPoolExecutor WATCHDOG = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "feed-body-watchdog");
+        thread.setDaemon(true);   // never keep the application alive
+        return thread;
+    });
+
+    static {
+        WATCHDOG.setRemoveOnCancelPolicy(true);     // a body that is closed takes its check with it
+    }
+
+    // the client every download uses
+    private static FeedHttpClient shared;
+
+    // the underlying client, and the time allowed for the headers and between the bytes of the body
+    private final HttpClient client;
+    private final Duration readTimeout;
+
+    // the failures and answer times of every host
+    private final ConcurrentHashMap<String, HostGuard> hosts = new ConcurrentHashMap<String, HostGuard>();
+
+    // statistics about the requests sent
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong tlsRequests = new AtomicLong();
+    private final AtomicLong newConnections = new AtomicLong();
+    private final AtomicLong http2Responses = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong hedgedRequests = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong wireBytes = new AtomicLong();       // body bytes as they came over the network
+    private final AtomicLong decodedBytes = new AtomicLong();    // the same bodies after decompression
+
+    /*******************************************************
+     * Function: FeedHttpClient()                          *
+     * Purpose: constructor: builds the HTTP client.       *
+     * @param connectTimeout time allowed to connect       *
+     * @param readTimeout time allowed for the response    *
+     *        headers to arrive once the request is sent,  *
+     *        and for each read of the body                *
+     * Return: none                                        *
+     */
+
+    public FeedHttpClient(Duration connectTimeout, Duration readTimeout)
+    {
+        this.readTimeout = readTimeout;
+
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)        // falls back to HTTP/1.1 if the server has no HTTP/2
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(connectTimeout);
+
+        // count every TLS connection the client opens
+        try {
+            builder.sslContext(new CountingSSLContext(SSLContext.getDefault(), newConnections));
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            // every JDK has a default TLS context
+            throw new IllegalStateException(e);
+        }
+
+        client = builder.build();
+
+    } // end of FeedHttpClient()
+
+    /*******************************************************
+     * Function: getShared()                               *
+     * Purpose: Returns the client shared by all downloads,*
+     *          creating it the first time.                *
+     * Argument: none                                      *
+     * Return: the shared client                           *
+     */
+
+    public static synchronized FeedHttpClient getShared()
+    {
+        if (shared == null)
+        {
+            shared = new FeedHttpClient(Duration.ofMillis(CONNECT_TIMEOUT_MS), Duration.ofMillis(READ_TIMEOUT_MS));
+        }
+        return shared;
+
+    } // end of getShared()
+
+    /*******************************************************
+     * Function: fetch()                                   *
+     * Purpose: Sends a GET request and returns as soon as *
+     *          the headers arrive; the caller must read   *
+     *          and close the body so the connection goes  *
+     *          back to the pool. 5xx and 429 answers and  *
+     *          network errors are retried. The            *
+     *          wait before a retry is a random time up to *
+     *          a limit that doubles with every attempt, or*
+     *          the Retry-After the server sent. When the  *
+     *          headers take longer than the host's 95th   *
+     *          percentile a second request is sent and the*
+     *          first answer wins. Failures are counted per*
+     *          host, and a host that fails too often in a *
+     *          row is not asked again until it cools down.*
+     *          A compressed body is asked for unless the  *
+     *          headers name an Accept-Encoding; read it   *
+     *          through decode().                          *
+     * @param url                                          *
+     * @param headers extra request headers                *
+     * @throws FeedException if the host keeps failing or *
+     *         its circuit breaker is open                 *
+     * @throws IOException                                 *
+     * @throws InterruptedException                        *
+     * Return: the response, with any status that is not  *
+     *         retried                                     *
+     */
+
+    public HttpResponse<InputStream> fetch(String url, Map<String, String> headers)
+            throws IOException, InterruptedException
+    {
+        Map<String, String> all = new HashMap<String, String>(headers);
+        all.putIfAbsent("Accept-Encoding", ACCEPT_ENCODING);
+        HttpRequest request = buildRequest(url, all);
+        String host = request.uri().getHost() != null ? request.uri().getHost() : url;
+        HostGuard guard = hosts.computeIfAbsent(host, key -> new HostGuard());
+
+        for (int attempt = 1; ; attempt++)
+        {
+            // a host that keeps failing is not asked at all
+            if (!guard.allow())
+            {
+                rejected.incrementAndGet();
+                throw new FeedException(host + " keeps failing, it is not asked again for "
+                        + TimeUnit.NANOSECONDS.toSeconds(guard.cooldownNanos()) + " s", url, 0);
+            }
+
+            long start = System.nanoTime();
+            long wait;
+            try {
+                HttpResponse<InputStream> response = send(request, guard);
+                int status = response.statusCode();
+                if (status != 429 && status < 500)
+                {
+                    guard.success(System.nanoTime() - start);
+                    return response;
+                }
+
+                // an overloaded or broken server, try again after the time it asked for
+                guard.failure();
+                wait = retryAfter(response);
+                discard(response);
+                if (attempt >= MAX_ATTEMPTS || wait > RETRY_AFTER_MAX_MS)
+                {
+                    throw new FeedException(host + " answered HTTP " + status
+                            + (attempt > 1 ? " after " + attempt + " tries" : ""), url, status);
+                }
+            }
+            catch (FeedException e)
+            {
+                throw e;
+            }
+            catch (InterruptedException | RuntimeException e)
+            {
+                // no answer either way, a trial request must not keep the breaker shut for good
+                guard.abandon();
+                throw e;
+            }
+            catch (IOException e)
+            {
+                guard.failure();
+                if (attempt >= MAX_ATTEMPTS)
+                {
+                    String reason = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+                    FeedException failed = new FeedException(host + " could not be reached: " + reason, url, 0);
+                    failed.initCause(e);
+                    throw failed;
+                }
+                wait = -1;
+            }
+
+            // full jitter: a random wait up to the backoff limit, so retries from many workers spread out
+            if (wait < 0)
+            {
+                long limit = Math.min(BACKOFF_MAX_MS, BACKOFF_BASE_MS << Math.min(attempt - 1, 20));
+                wait = ThreadLocalRandom.current().nextLong(limit + 1);
+            }
+            retries.incrementAndGet();
+            Thread.sleep(wait);
+        }
+
+    } // end of fetch()
+
+    /*******************************************************
+     * Function: send()                                    *
+     * Purpose: Sends one attempt of a request. If the host*
+     *          has enough answer times and this one is    *
+     *          slower than 95% of them, the same request  *
+     *          is sent again and whichever answers first  *
+     *          is used; the other is cancelled and its    *
+     *          body closed.                               *
+     * @param request                                      *
+     * @param guard the host's answer times                *
+     * @throws IOException                                 *
+     * @throws InterruptedException                        *
+     * Return: the response                                *
+     */
+
+    private HttpResponse<InputStream> send(HttpRequest request, HostGuard guard) throws IOException, InterruptedException
+    {
+        countRequest(request);
+        CompletableFuture<HttpResponse<InputStream>> first =
+                client.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream());
+        CompletableFuture<HttpResponse<InputStream>> second = null;
+
+        try {
+            long hedgeAfter = HEDGE ? guard.hedgeDelayNanos() : -1;
+            if (hedgeAfter < 0)
+            {
+                return countResponse(first.get());
+            }
+            try {
+                return countResponse(first.get(hedgeAfter, TimeUnit.NANOSECONDS));
+            }
+            catch (TimeoutException e)
+            {
+                // slower than usual, ask again
+            }
+
+            hedgedRequests.incrementAndGet();
+            countRequest(request);
+            second = client.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream());
+
+            // the first good answer wins, the other one's body is closed when it arrives
+            CompletableFuture<HttpResponse<InputStream>> winner = new CompletableFuture<HttpResponse<InputStream>>();
+            AtomicInteger failures = new AtomicInteger();
+            for (CompletableFuture<HttpResponse<InputStream>> attempt : Arrays.asList(first, second))
+            {
+                attempt.whenComplete((response, error) -> {
+                    if (error == null)
+                    {
+                        if (!winner.complete(response))
+                        {
+                            closeQuietly(response);
+                        }
+                    }
+                    else if (failures.incrementAndGet() == 2)
+                    {
+                        winner.completeExceptionally(error);
+                    }
+                });
+            }
+
+            HttpResponse<InputStream> response = winner.get();
+            if (second.isDone() && !second.isCompletedExceptionally() && second.join() == response)
+            {
+                hedgeWins.incrementAndGet();
+            }
+            return countResponse(response);
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+        finally {
+            // stop whichever request is still waiting, also when this thread is interrupted
+            first.cancel(true);
+            if (second != null)
+            {
+                second.cancel(true);
+            }
+        }
+
+    } // end of send()
+
+    // build a GET request for a feed
+    private HttpRequest buildRequest(String url, Map<String, String> headers)
+    {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+                .timeout(readTimeout)
+                .GET();
+        headers.forEach(builder::header);
+        return builder.build();
+    }
+
+    // count a request that is about to be sent
+    private void countRequest(HttpRequest request)
+    {
+        requests.incrementAndGet();
+        if ("https".equalsIgnoreCase(request.uri().getScheme()))
+        {
+            tlsRequests.incrementAndGet();
+        }
+    }
+
+    // count the protocol of a response
+    private HttpResponse<InputStream> countResponse(HttpResponse<InputStream> response)
+    {
+        if (response.version() == HttpClient.Version.HTTP_2)
+        {
+            http2Responses.incrementAndGet();
+        }
+        return response;
+    }
+
+    /*******************************************************
+     * Function: retryAfter()                              *
+     * Purpose: Reads the Retry-After header, which is     *
+     *          either a number of seconds or a date.      *
+     * @param response                                     *
+     * Return: milliseconds to wait, or -1 if the header is*
+     *         missing or cannot be read                   *
+     */
+
+    private static long retryAfter(HttpResponse<?> response)
+    {
+        String value = response.headers().firstValue("Retry-After").orElse(null);
+        if (value == null)
+        {
+            return -1;
+        }
+        value = value.trim();
+
+        try {
+            return Math.max(0, TimeUnit.SECONDS.toMillis(Long.parseLong(value)));
+        }
+        catch (NumberFormatException e)
+        {
+            // not a number of seconds, try a date
+        }
+        try {
+            ZonedDateTime date = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0, date.toInstant().toEpochMilli() - System.currentTimeMillis());
+        }
+        catch (DateTimeParseException e)
+        {
+            return -1;
+        }
+
+    } // end of retryAfter()
+
+    // close a response that is not wanted without reading it
+    static void closeQuietly(HttpResponse<InputStream> response)
+    {
+        try {
+            response.body().close();
+        }
+        catch (IOException e)
+        {
+            // the connection is dropped, nothing else to do
+        }
+    }
+
+    /*******************************************************
+     * Function: decode()                                  *
+     * Purpose: Returns the body of a response as the      *
+     *          server meant it, unpacking a gzip or       *
+     *          deflate Content-Encoding while it is read, *
+     *          so the parser still starts on the first    *
+     *          bytes that arrive. The bytes before and    *
+     *          after decoding are counted in the transfer *
+     *          and in the client's statistics. A read that*
+     *          waits longer than the read timeout for the *
+     *          server closes the body and fails.          *
+     * @param response                                     *
+     * @param transfer receives the byte counts            *
+     * @throws IOException if the body is in an encoding   *
+     *         that is not known, or its gzip header is    *
+     *         broken; the body is closed                  *
+     * Return: the decoded body; closing it closes the     *
+     *         response                                    *
+     */
+
+    public InputStream decode(HttpResponse<InputStream> response, Transfer transfer) throws IOException
+    {
+        String encoding = response.headers().firstValue("Content-Encoding").orElse("identity")
+                .trim().toLowerCase(Locale.ROOT);
+        transfer.encoding = encoding;
+        InputStream wire = new CountingInputStream(new IdleTimeoutInputStream(response.body(), readTimeout.toMillis()),
+                transfer.wireBytes, wireBytes);
+
+        try {
+            InputStream body;
+            switch (encoding)
+            {
+                case "identity":
+                case "":
+                    body = wire;
+                    break;
+
+                case "gzip":
+                case "x-gzip":
+                    body = new GZIPInputStream(wire, 8192);
+                    break;
+
+                case "deflate":
+                    body = inflate(wire);
+                    break;
+
+                // brotli is not asked for, the JDK has no decoder for it
+                default:
+                    throw new IOException("feed sent in unknown content encoding " + encoding);
+            }
+            return new CountingInputStream(body, transfer.bytes, decodedBytes);
+        }
+        catch (IOException e)
+        {
+            closeQuietly(response);
+            throw e;
+        }
+
+    } // end of decode()
+
+    /*******************************************************
+     * Function: inflate()                                 *
+     * Purpose: Unpacks a deflate body. The standard says  *
+     *          it is zlib data, but some servers send the *
+     *          raw deflate stream, so the first two bytes *
+     *          are looked at to tell which one it is.     *
+     * @param wire                                         *
+     * @throws IOException                                 *
+     * Return: the inflating stream                        *
+     */
+
+    private static InputStream inflate(InputStream wire) throws IOException
+    {
+        PushbackInputStream in = new PushbackInputStream(wire, 2);
+        byte[] header = new byte[2];
+        int n = in.readNBytes(header, 0, 2);
+        in.unread(header, 0, n);
+
+        // a zlib header: method 8 in the low bits, and the two bytes a multiple of 31
+        boolean zlib = n == 2 && (header[0] & 0x0f) == 8 && (((header[0] & 0xff) << 8) | (header[1] & 0xff)) % 31 == 0;
+        Inflater inflater = new Inflater(!zlib);
+
+        // an Inflater that is passed in is not ended by the stream, so its native memory is freed here
+        return new InflaterInputStream(in, inflater, 8192) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                }
+                finally {
+                    inflater.end();
+                }
+            }
+        };
+
+    } // end of inflate()
+
+    /*******************************************************
+     * Function: discard()                                 *
+     * Purpose: Reads a response body to the end and closes*
+     *          it, so a keep-alive connection can be used *
+     *          again after a response that is not wanted. *
+     *          A body that is too big or too slow to be   *
+     *          worth it is closed without reading the rest*
+     *          and its connection is dropped.             *
+     * @param response                                     *
+     * Return: none void                                   *
+     */
+
+    public static void discard(HttpResponse<InputStream> response)
+    {
+        try (InputStream body = new IdleTimeoutInputStream(response.body(), DISCARD_IDLE_MS))
+        {
+            byte[] buffer = new byte[8192];
+            long left = DISCARD_MAX_BYTES;
+            while (left > 0)
+            {
+                int n = body.read(buffer, 0, (int) Math.min(buffer.length, left));
+                if (n < 0)
+                {
+                    break;
+                }
+                left -= n;
+            }
+        }
+        catch (IOException e)
+        {
+            // the connection is dropped instead of reused, nothing else to do
+        }
+
+    } // end of discard()
+
+    // getters for the statistics
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getNewConnections() {
+        return newConnections.get();
+    }
+
+    // https requests that did not need a new connection (HTTP/2 streams or kept-alive HTTP/1.1 sockets),
+    // plain http connections cannot be seen so they are left out
+    public long getReusedConnections() {
+        return Math.max(0, tlsRequests.get() - newConnections.get());
+    }
+
+    public long getHttp2Responses() {
+        return http2Responses.get();
+    }
+
+    public long getRetries() {
+        return retries.get();
+    }
+
+    public long getHedgedRequests() {
+        return hedgedRequests.get();
+    }
+
+    // hedged requests whose second request answered first
+    public long getHedgeWins() {
+        return hedgeWins.get();
+    }
+
+    // requests not sent because the circuit breaker of their host was open
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public long getWireBytes() {
+        return wireBytes.get();
+    }
+
+    public long getDecodedBytes() {
+        return decodedBytes.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d requests, %d new connections, %d reused, %d over HTTP/2, "
+                        + "%d retries, %d hedged (%d won), %d rejected, %d KB received for %d KB of feeds",
+                getRequests(), getNewConnections(), getReusedConnections(), getHttp2Responses(),
+                getRetries(), getHedgedRequests(), getHedgeWins(), getRejected(),
+                getWireBytes() / 1024, getDecodedBytes() / 1024);
+    }
+
+    /******************************************************
+     * Class: Transfer                                    *
+     * Purpose: The size of one response body, as it came *
+     *          over the network and after decoding, and  *
+     *          the content encoding it came in.          *
+     */
+
+    public static class Transfer {
+
+        private final AtomicLong wireBytes = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private volatile String encoding = "identity";
+
+        // getters for the Transfer class data members
+        public long getWireBytes() {
+            return wireBytes.get();
+        }
+
+        public long getBytes() {
+            return bytes.get();
+        }
+
+        public String getEncoding() {
+            return encoding;
+        }
+
+    } // end of Transfer class
+
+    /******************************************************
+     * Class: CountingInputStream                         *
+     * Purpose: Adds the number of bytes read through it  *
+     *          to a set of counters.                     *
+     */
+
+    private static class CountingInputStream extends FilterInputStream {
+
+        private final AtomicLong[] counters;
+
+        CountingInputStream(InputStream in, AtomicLong... counters)
+        {
+            super(in);
+            this.counters = counters;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0)
+            {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0)
+            {
+                count(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count(skipped);
+            return skipped;
+        }
+
+        private void count(long n) {
+            for (AtomicLong counter : counters)
+            {
+                counter.addAndGet(n);
+            }
+        }
+
+    } // end of CountingInputStream class
+
+    /******************************************************
+     * Class: IdleTimeoutInputStream                      *
+     * Purpose: Closes the stream under it when a read    *
+     *          has waited longer than the idle time for a*
+     *          byte; the read then fails with a          *
+     *          SocketTimeoutException. The time between  *
+     *          reads, while the caller parses, is not    *
+     *          counted.                                  *
+     */
+
+    private static class IdleTimeoutInputStream extends FilterInputStream {
+
+        private final long idleNanos;
+        private final ScheduledFuture<?> check;
+        private volatile long readingSince = 0;     // start of the read that is waiting, 0 between reads
+        private volatile boolean timedOut = false;
+
+        IdleTimeoutInputStream(InputStream in, long idleMillis)
+        {
+            super(in);
+            idleNanos = TimeUnit.MILLISECONDS.toNanos(idleMillis);
+            long period = Math.max(10, idleMillis / 4);
+            check = WATCHDOG.scheduleWithFixedDelay(this::check, period, period, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int read() throws IOException {
+            start();
+            try {
+                return super.read();
+            }
+            catch (IOException e)
+            {
+                throw timedOut ? timeout(e) : e;
+            }
+            finally {
+                readingSince = 0;
+            }
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            start();
+            try {
+                return super.read(buffer, offset, length);
+            }
+            catch (IOException e)
+            {
+                throw timedOut ? timeout(e) : e;
+            }
+            finally {
+                readingSince = 0;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            check.cancel(false);
+            super.close();
+        }
+
+        // note when a read starts, a stream closed by the watchdog stays failed
+        private void start() throws IOException {
+            if (timedOut)
+            {
+                throw timeout(null);
+            }
+            readingSince = System.nanoTime() | 1;   // never 0
+        }
+
+        private SocketTimeoutException timeout(IOException cause) {
+            SocketTimeoutException e = new SocketTimeoutException("no data from the server for "
+                    + TimeUnit.NANOSECONDS.toMillis(idleNanos) + " ms");
+            e.initCause(cause);
+            return e;
+        }
+
+        // runs on the watchdog thread: closing the body ends the read that waits for it
+        private void check() {
+            long since = readingSince;
+            if (since != 0 && System.nanoTime() - since > idleNanos)
+            {
+                timedOut = true;
+                check.cancel(false);
+                try {
+                    in.close();
+                }
+                catch (IOException e)
+                {
+                    // the read fails either way
+                }
+            }
+        }
+
+    } // end of IdleTimeoutInputStream class
+
+    /******************************************************
+     * Class: CountingSSLContext                          *
+     * Purpose: An SSLContext that passes every call on to*
+     *          the default context and counts the engines*
+     *          it creates. The HTTP client creates one   *
+     *          engine per new connection.                *
+     */
+
+    private static class CountingSSLContext extends SSLContext {
+
+        CountingSSLContext(SSLContext delegate, AtomicLong counter)
+        {
+            super(new CountingSpi(delegate, counter), delegate.getProvider(), delegate.getProtocol());
+        }
+
+    } // end of CountingSSLContext class
+
+    private static class CountingSpi extends SSLContextSpi {
+
+        private final SSLContext delegate;
+        private final AtomicLong counter;
+
+        CountingSpi(SSLContext delegate, AtomicLong counter)
+        {
+            this.delegate = delegate;
+            this.counter = counter;
+        }
+
+        @Override
+        protected void engineInit(KeyManager[] km, TrustManager[] tm, SecureRandom random) throws KeyManagementException {
+            delegate.init(km, tm, random);
+        }
+
+        @Override
+        protected SSLSocketFactory engineGetSocketFactory() {
+            return delegate.getSocketFactory();
+        }
+
+        @Override
+        protected SSLServerSocketFactory engineGetServerSocketFactory() {
+            return delegate.getServerSocketFactory();
+        }
+
+        @Override
+        protected SSLEngine engineCreateSSLEngine() {
+            counter.incrementAndGet();
+            return delegate.createSSLEngine();
+        }
+
+        @Override
+        protected SSLEngine engineCreateSSLEngine(String host, int port) {
+            counter.incrementAndGet();
+            return delegate.createSSLEngine(host, port);
+        }
+
+        @Override
+        protected SSLSessionContext engineGetServerSessionContext() {
+            return delegate.getServerSessionContext();
+        }
+
+        @Override
+        protected SSLSessionContext engineGetClientSessionContext() {
+            return delegate.getClientSessionContext();
+        }
+
+        @Override
+        protected SSLParameters engineGetDefaultSSLParameters() {
+            return delegate.getDefaultSSLParameters();
+        }
+
+        @Override
+        protected SSLParameters engineGetSupportedSSLParameters() {
+            return delegate.getSupportedSSLParameters();
+        }
+
+    } // end of CountingSpi class
+
+    /******************************************************
+     * Class: HostGuard                                   *
+     * Purpose: The circuit breaker and the recent answer *
+     *          times of one host. After too many failures*
+     *          in a row the breaker opens and requests   *
+     *          fail at once; once the cooldown is over   *
+     *          one request is let through, and its result*
+     *          closes or opens the breaker again.        *
+     */
+
+    private static class HostGuard {
+
+        // answer times kept for the percentile, and how many are needed before hedging
+        private static final int SAMPLES = 100;
+        private static final int MIN_SAMPLES = 20;
+
+        private final long[] latencies = new long[SAMPLES];
+        private int count = 0;
+        private int next = 0;
+
+        private int failures = 0;
+        private boolean open = false;
+        private Thread trial = null;        // the thread of the one request let through after the cooldown
+        private long openedAt;
+
+        // tests if a request may be sent
+        synchronized boolean allow() {
+            if (!open)
+            {
+                return true;
+            }
+            if (trial != null || cooldownNanos() > 0)
+            {
+                return false;
+            }
+            trial = Thread.currentThread();
+            return true;
+        }
+
+        // the request of this thread ended without an answer, let the next one try
+        synchronized void abandon() {
+            if (trial == Thread.currentThread())
+            {
+                trial = null;
+            }
+        }
+
+        // time left until the open breaker lets a request through
+        synchronized long cooldownNanos() {
+            return Math.max(0, TimeUnit.MILLISECONDS.toNanos(BREAKER_OPEN_MS) - (System.nanoTime() - openedAt));
+        }
+
+        synchronized void success(long nanos) {
+            failures = 0;
+            open = false;
+            trial = null;
+
+            latencies[next] = nanos;
+            next = (next + 1) % SAMPLES;
+            count = Math.min(count + 1, SAMPLES);
+        }
+
+        synchronized void failure() {
+            failures++;
+            if (trial != null || failures >= BREAKER_FAILURES)
+            {
+                open = true;
+                trial = null;
+                openedAt = System.nanoTime();
+            }
+        }
+
+        // the 95th percentile of the answer times, -1 until there are enough of them
+        synchronized long hedgeDelayNanos() {
+            if (count < MIN_SAMPLES)
+            {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            long p95 = sorted[(int) Math.ceil(count * 0.95) - 1];
+            return Math.max(p95, TimeUnit.MILLISECONDS.toNanos(HEDGE_MIN_MS));
+        }
+
+    } // end of HostGuard class
+
+} // end of the FeedHttpClient class
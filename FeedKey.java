@@ -0,0 +1,129 @@
+/**********************************************************
+ * Class: FeedKey                                         *
+ *                                                        *
+ * Author: Zubaidah Alqaisi                               *
+ *                                                        *
+ * Private members: type, limit, explicit                 *
+ *                                                        *
+ * Public members: FeedKey(), getType(), getLimit(),      *
+ *                 getLimitCount(), isExplicit(), toUrl(),*
+ *                 allFeeds()                             *
+ *                                                        *
+ * Purpose: Identifies one iTunes feed by the three menu  *
+ *          choices (type, limit, explicit) and builds the*
+ *          URL that is downloaded for it.                *
+ *********************************************************/
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+public class FeedKey {
+
+    // every value offered by the menu bar, used to build all combinations
+    public static final String[] TYPES = {"new-music", "recent-releases", "top-albums"};
+    public static final String[] LIMITS = {"10", "25", "50", "100"};
+
+    // base of every feed URL
+    private static final String BASE_URL = "https://rss.itunes.apple.com/api/v1/us/itunes-music/";
+
+    // the three parts of the key
+    private final String type;
+    private final String limit;
+    private final boolean explicit;
+
+    // class constructor
+    public FeedKey(String type, String limit, boolean explicit)
+    {
+        this.type = type;
+        this.limit = limit;
+        this.explicit = explicit;
+
+    } // end of FeedKey()
+
+    // getters for the FeedKey class data members
+    public String getType() {
+        return type;
+    }
+
+    public String getLimit() {
+        return limit;
+    }
+
+    // the limit as a number of albums, 0 if it is not a number
+    public int getLimitCount() {
+        try {
+            return Integer.parseInt(limit);
+        }
+        catch (NumberFormatException e)
+        {
+            return 0;
+        }
+    }
+
+    public boolean isExplicit() {
+        return explicit;
+    }
+
+    /*******************************************************
+     * Function: toUrl()                                   *
+     * Purpose: Builds the URL string for this feed.       *
+     * Argument: none                                      *
+     * Return: the atom feed URL                           *
+     */
+
+    public String toUrl()
+    {
+        //Build a URL string for the requested fetch
+        String albumUrl = BASE_URL + type + "/all/" + limit + "/";
+
+        // if explicit is Yes, add it to the url, otherwise add non to it
+        albumUrl += explicit ? "explicit.atom" : "non-explicit.atom";
+
+        return albumUrl;
+
+    } // end of toUrl()
+
+    /*******************************************************
+     * Function: allFeeds()                                *
+     * Purpose: Builds a key for every type x limit x      *
+     *          explicit combination in the menu bar.      *
+     * Argument: none                                      *
+     * Return: list of all feed keys                       *
+     */
+
+    public static List<FeedKey> allFeeds()
+    {
+        List<FeedKey> keys = new ArrayList<FeedKey>();
+
+        for (String type : TYPES)
+        {
+            for (String limit : LIMITS)
+            {
+                keys.add(new FeedKey(type, limit, true));
+                keys.add(new FeedKey(type, limit, false));
+            }
+        }
+        return keys;
+
+    } // end of allFeeds()
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof FeedKey)) return false;
+        FeedKey other = (FeedKey) o;
+        return explicit == other.explicit && type.equals(other.type) && limit.equals(other.limit);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, limit, explicit);
+    }
+
+    @Override
+    public String toString() {
+        return type + "/" + limit + "/" + (explicit ? "explicit" : "non-explicit");
+    }
+
+} // end of the FeedKey class
@@ -0,0 +1,327 @@
+/**********************************************************
+ * Class: FeedReader                                      *
+ *                                                        *
+ * Author: Zubaidah Alqaisi                               *
+ *                                                        *
+ * Private members: backend, reading                      *
+ *                                                        *
+ * Public members: read(), abort(), charsetOf(),          *
+ *                 getBackend(), setBackend(), Backend    *
+ *                                                        *
+ * Purpose: Downloads one atom feed and parses it straight*
+ *          off the connection with an AlbumHandler or the*
+ *          StaxAlbumReader. It is used by every download *
+ *          path so they all share the same pooled HTTP   *
+ *          client and parser code. The feed is asked for *
+ *          compressed and unpacked while it is parsed,   *
+ *          and the bytes before and after are counted.   *
+ *          A download can be                             *
+ *          stopped from another thread with abort().     *
+ *********************************************************/
+
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.stream.XMLStreamException;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+public class FeedReader {
+
+    // the parsers the albums can be read with
+    public enum Backend { SAX, STAX }
+
+    // the parser used by every download, can be chosen with -Dfeed.parser=stax or from the menu bar
+    private static volatile Backend backend =
+            "stax".equalsIgnoreCase(System.getProperty("feed.parser")) ? Backend.STAX : Backend.SAX;
+
+    // the body each thread is parsing, so another thread can close it to stop the download
+    private static final Map<Thread, InputStream> reading = new ConcurrentHashMap<Thread, InputStream>();
+
+    // only static helpers, no instances
+    private FeedReader()
+    {
+    }
+
+    /*******************************************************
+     * Function: read()                                    *
+     * Purpose: Reads the basic fields of every album, the *
+     *          ones shown in the table.                   *
+     * @param stringUrl                                    *
+     * @param limit                                        *
+     * @param sink                                         *
+     * @throws IOException                                 *
+     * @throws InterruptedException                        *
+     * @throws SAXException                                *
+     * @throws ParserConfigurationException                *
+     * @throws XMLStreamException                          *
+     * Return: list of albums in the feed                  *
+     */
+
+    public static List<Album> read(String stringUrl, int limit, Consumer<Album> sink)
+            throws IOException, InterruptedException, SAXException, ParserConfigurationException, XMLStreamException
+    {
+        return read(stringUrl, limit, Album.BASIC_FIELDS, sink);
+
+    } // end of read()
+
+    /*******************************************************
+     * Function: read()                                    *
+     * Purpose: Sends the request through the shared HTTP  *
+     *          client, creates a SAX parser and parses the*
+     *          XML straight off the socket, so each album *
+     *          reaches the sink while the rest of the feed*
+     *          is still downloading. The validators of the*
+     *          cached copy are sent along, and on a 304   *
+     *          the cached albums are used without parsing.*
+     *          Once limit albums are found reading stops, *
+     *          and closing the body releases the socket   *
+     *          without downloading the rest of the feed.  *
+     *          Any other status than 200 has its body     *
+     *          drained so the connection can be reused,   *
+     *          and is thrown as a FeedException.          *
+     *          Only the given fields of each entry are    *
+     *          read, in the same single pass. While the   *
+     *          body is parsed abort() can close it.       *
+     * @param stringUrl                                    *
+     * @param limit most albums the feed is expected to    *
+     *        have, 0 if unknown                           *
+     * @param fields the values of each album to read      *
+     * @param sink                                         *
+     * @throws FeedException if the feed is not available *
+     * @throws IOException                                 *
+     * @throws InterruptedException                        *
+     * @throws SAXException                                *
+     * @throws ParserConfigurationException                *
+     * @throws XMLStreamException                          *
+     * Return: list of albums in the feed                  *
+     */
+
+    public static List<Album> read(String stringUrl, int limit, Set<Album.Field> fields, Consumer<Album> sink)
+            throws IOException, InterruptedException, SAXException, ParserConfigurationException, XMLStreamException
+    {
+        return read(stringUrl, limit, fields, sink, new FeedHttpClient.Transfer());
+
+    } // end of read()
+
+    /*******************************************************
+     * Function: read()                                    *
+     * Purpose: Reads the given fields of every album and  *
+     *          counts the bytes of the body, see above.   *
+     * @param stringUrl                                    *
+     * @param limit most albums the feed is expected to    *
+     *        have, 0 if unknown                           *
+     * @param fields the values of each album to read      *
+     * @param sink                                         *
+     * @param transfer receives the bytes the body took on *
+     *        the network and after decompression, both 0 *
+     *        when the cached copy was used                *
+     * @throws FeedException if the feed is not available *
+     * @throws IOException                                 *
+     * @throws InterruptedException                        *
+     * @throws SAXException                                *
+     * @throws ParserConfigurationException                *
+     * @throws XMLStreamException                          *
+     * Return: list of albums in the feed                  *
+     */
+
+    public static List<Album> read(String stringUrl, int limit, Set<Album.Field> fields, Consumer<Album> sink,
+                                   FeedHttpClient.Transfer transfer)
+            throws IOException, InterruptedException, SAXException, ParserConfigurationException, XMLStreamException
+    {
+        // the albums found in the feed
+        List<Album> albums = new ArrayList<Album>();
+
+        // ask the server to answer 304 if the cached copy is still current
+        FeedCache cache = FeedCache.getShared();
+        FeedCache.Entry cached = cache.lookup(stringUrl);
+
+        // a copy read with fewer fields cannot answer this request
+        if (cached != null && !cached.getFields().containsAll(fields))
+        {
+            cached = null;
+        }
+        Map<String, String> headers = new HashMap<String, String>();
+        if (cached != null && cached.getETag() != null)
+        {
+            headers.put("If-None-Match", cached.getETag());
+        }
+        if (cached != null && cached.getLastModified() != null)
+        {
+            headers.put("If-Modified-Since", cached.getLastModified());
+        }
+
+        // send the request over a pooled connection, retrying a failing server
+        FeedHttpClient client = FeedHttpClient.getShared();
+        HttpResponse<InputStream> response = client.fetch(stringUrl, headers);
+
+        // nothing changed, publish the albums parsed last time
+        if (response.statusCode() == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null)
+        {
+            FeedHttpClient.discard(response);
+            for (Album album : cached.getAlbums())
+            {
+                albums.add(album);
+                sink.accept(album);
+            }
+            return albums;
+        }
+
+        // if the feed is not available, give the connection back and tell the user why
+        if (response.statusCode() != HttpURLConnection.HTTP_OK)
+        {
+            FeedHttpClient.discard(response);
+            throw new FeedException(response.uri().getHost() + " answered HTTP " + response.statusCode(),
+                    stringUrl, response.statusCode());
+        }
+
+        // let abort() close the body; a thread interrupted before that can no longer be stopped by it
+        Thread current = Thread.currentThread();
+        reading.put(current, response.body());
+        boolean parsed = false;
+        try {
+            if (current.isInterrupted())
+            {
+                throw new InterruptedIOException("download of " + stringUrl + " cancelled");
+            }
+
+            // hand the decompressed bytes to the parser, no copy of the page is kept in memory
+            try (InputStream stream = new BufferedInputStream(client.decode(response, transfer)))
+            {
+                // the charset from the header wins, otherwise the parser reads it from the XML prolog
+                String charset = charsetOf(response.headers().firstValue("Content-Type").orElse(null));
+
+                if (backend == Backend.STAX)
+                {
+                    // pull the entries, reading stops after the last one asked for
+                    StaxAlbumReader.read(stream, charset, limit, fields, albums, sink);
+                    parsed = true;
+                }
+                else
+                {
+                    InputSource source = new InputSource(stream);
+                    if (charset != null)
+                    {
+                        source.setEncoding(charset);
+                    }
+
+                    // borrow a parser from the shared pool and give it back when done
+                    SAXParserPool pool = SAXParserPool.getShared();
+                    SAXParser parser = pool.acquire();
+                    try {
+                        //parse the page. Parse take two requirments: input source and  handler to handel tasks
+                        parser.parse(source, new AlbumHandler(albums, sink, limit, fields));
+                        parsed = true;
+                    }
+                    catch (AlbumHandler.LimitReachedException e)
+                    {
+                        // every album asked for was found, the rest of the body is not read
+                        parsed = true;
+                    }
+                    finally {
+                        pool.release(parser);
+                    }
+                }
+            }
+        }
+        finally {
+            reading.remove(current);
+            if (!parsed)
+            {
+                FeedHttpClient.closeQuietly(response);   // the body may never have been opened
+            }
+        }
+
+        // keep the validators and albums for a 304 next time; if the cache cannot be written the feed
+        // is still fine, only the next download is a full one
+        cache.store(stringUrl, response.headers().firstValue("ETag").orElse(null),
+                response.headers().firstValue("Last-Modified").orElse(null), fields, albums);
+
+        return albums;
+
+    } // end of read()
+
+    /*******************************************************
+     * Function: abort()                                   *
+     * Purpose: Closes the body a thread is reading, which *
+     *          drops its connection. The blocked read in  *
+     *          that thread fails at once and its parse    *
+     *          stops with an exception. The thread should *
+     *          be interrupted first, so it cannot start   *
+     *          reading a new body afterwards.             *
+     * @param thread a thread inside read()                *
+     * Return: none void                                   *
+     */
+
+    public static void abort(Thread thread)
+    {
+        InputStream body = reading.remove(thread);
+        if (body != null)
+        {
+            try {
+                body.close();
+            }
+            catch (IOException e)
+            {
+                // the connection is dropped either way
+            }
+        }
+
+    } // end of abort()
+
+    // getter and setter for the parser used by every download
+    public static Backend getBackend() {
+        return backend;
+    }
+
+    public static void setBackend(Backend backend) {
+        FeedReader.backend = backend;
+    }
+
+    /*****************************************************
+     * Function: charsetOf()                             *
+     * Purpose: Pulls the charset parameter out of a     *
+     *          Content-Type header value.               *
+     * @param contentType                                *
+     * Return: the charset name, or null if none is given*
+     */
+
+    static String charsetOf(String contentType)
+    {
+        if (contentType == null)
+        {
+            return null;
+        }
+
+        // look at every parameter after the media type, e.g. "application/xml; charset=utf-8"
+        for (String param : contentType.split(";"))
+        {
+            String trimmed = param.trim();
+            if (trimmed.regionMatches(true, 0, "charset=", 0, 8))
+            {
+                String charset = trimmed.substring(8).trim();
+                // strip optional quotes around the value
+                if (charset.length() > 1 && charset.startsWith("\"") && charset.endsWith("\""))
+                {
+                    charset = charset.substring(1, charset.length() - 1);
+                }
+                return charset.isEmpty() ? null : charset;
+            }
+        }
+        return null;
+
+    } // end of charsetOf()
+
+} // end of the FeedReader class
@@ -0,0 +1,247 @@
+/**********************************************************
+ * Class: ParticleBenchmark                               *
+ *                                                        *
+ * Author: Zubaidah Alqaisi                               *
+ *                                                        *
+ * Public members: main()                                 *
+ *                                                        *
+ * Purpose: Measures the time per ball and step of the    *
+ *          ParticleSystem, next to a list of ball objects *
+ *          that each keep their own values and move       *
+ *          themselves the way Ball used to. Both start    *
+ *          from the same balls, and their positions are  *
+ *          compared at the end. Then the step is shared  *
+ *          over 1, 2, ... up to cores threads, each time *
+ *          from the same balls, to show how it scales and*
+ *          that every count of threads ends with the     *
+ *          balls in the same places. Last, collide() is  *
+ *          timed for a quarter, half and all of the balls*
+ *          on panels grown to keep them as spread, with  *
+ *          the pairs it tested and found touching, and   *
+ *          the touching pairs the grid finds must be the *
+ *          ones testing every pair of a few thousand     *
+ *          balls finds, or the benchmark fails.          *
+ *          Run it with:                                  *
+ *            java ParticleBenchmark [balls] [steps]      *
+ *                                   [cores]              *
+ *********************************************************/
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class ParticleBenchmark {
+
+    public static void main(String[] args)
+    {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int steps = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int cores = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        Dimension panel = new Dimension(1600, 1200);
+
+        // the same balls in both models
+        ParticleSystem particles = createBalls(count, panel);
+        ArrayList<ObjectBall> objects = new ArrayList<ObjectBall>(count);
+        Random random = new Random(470);
+        for (int i = 0; i < count; i++)
+        {
+            int radius = 3 + random.nextInt(4);
+            int x = radius + 1 + random.nextInt(panel.width - 2 * radius - 2);
+            int y = radius + 1 + random.nextInt(panel.height - 2 * radius - 2);
+            int dx = (1 + random.nextInt(5)) * (random.nextBoolean() ? 1 : -1);
+            int dy = (1 + random.nextInt(5)) * (random.nextBoolean() ? 1 : -1);
+            objects.add(new ObjectBall(radius, x, y, dx, dy));
+        }
+
+        // the first rounds only warm up the JIT
+        for (int round = 0; round < 10; round++)
+        {
+            long start = System.nanoTime();
+            for (int s = 0; s < steps; s++)
+            {
+                for (ObjectBall ball : objects)
+                {
+                    ball.move(panel);
+                }
+            }
+            long objectNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int s = 0; s < steps; s++)
+            {
+                particles.step(panel);
+            }
+            long arrayNanos = System.nanoTime() - start;
+
+            if (round >= 5)
+            {
+                System.out.printf("%d balls: objects %.2f ns/ball/step   arrays %.2f ns/ball/step   %.1fx%n", count,
+                        (double) objectNanos / count / steps, (double) arrayNanos / count / steps,
+                        (double) objectNanos / arrayNanos);
+            }
+        }
+
+        // both models must have moved every ball to the same place
+        int differ = 0;
+        for (int i = 0; i < count; i++)
+        {
+            ObjectBall ball = objects.get(i);
+            if (particles.drawX(i, 1.0) != ball.x || particles.drawY(i, 1.0) != ball.y)
+            {
+                differ++;
+            }
+        }
+        System.out.println(differ == 0 ? "both models agree" : differ + " balls differ");
+
+        // the same balls moved by more and more threads
+        long oneThread = 0;
+        long oneSum = 0;
+        for (int threads = 1; threads <= cores; threads++)
+        {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            ParticleSystem system = createBalls(count, panel);
+            long best = Long.MAX_VALUE;
+            for (int round = 0; round < 10; round++)
+            {
+                long start = System.nanoTime();
+                for (int s = 0; s < steps; s++)
+                {
+                    system.step(panel, pool);
+                }
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            pool.shutdown();
+
+            long sum = checksum(system);
+            if (threads == 1)
+            {
+                oneThread = best;
+                oneSum = sum;
+            }
+            System.out.printf("%2d threads: %.2f ns/ball/step   %.2fx   %s%n", threads,
+                    (double) best / count / steps, (double) oneThread / best,
+                    sum == oneSum ? "same positions" : "POSITIONS DIFFER");
+        }
+
+        // the grid must find the same touching pairs as testing every pair, with the same test and before
+        // anything is pushed apart
+        ParticleSystem few = createBalls(2000, panel);
+        int touching = 0;
+        for (int i = 0; i < few.size(); i++)
+        {
+            for (int j = i + 1; j < few.size(); j++)
+            {
+                float x = few.getX(j) - few.getX(i);
+                float y = few.getY(j) - few.getY(i);
+                float reach = few.getRadius(i) + few.getRadius(j);
+                float distance2 = x * x + y * y;
+                if (distance2 < reach * reach && distance2 != 0)
+                {
+                    touching++;
+                }
+            }
+        }
+        int contacts = few.countContacts(panel);
+        System.out.printf("2000 balls: %d pairs touch, the grid tested %d pairs and found %d%n", touching,
+                few.getCandidates(), contacts);
+        if (contacts != touching)
+        {
+            throw new IllegalStateException("the grid found " + contacts + " touching pairs, not " + touching);
+        }
+
+        // 400 pixels per ball each time, so the time per ball stays the same if the grid scales
+        for (int size = count / 4; size <= count; size *= 2)
+        {
+            int width = (int) Math.sqrt(size * 400 * 4 / 3.0);
+            Dimension grown = new Dimension(width, width * 3 / 4);
+            ParticleSystem system = createBalls(size, grown);
+            long best = Long.MAX_VALUE;
+            long tested = 0;
+            long found = 0;
+            for (int round = 0; round < 10; round++)
+            {
+                long elapsed = 0;
+                tested = 0;
+                found = 0;
+                for (int s = 0; s < steps; s++)
+                {
+                    system.step(grown);
+                    long start = System.nanoTime();
+                    system.collide(grown);
+                    elapsed += System.nanoTime() - start;
+                    tested += system.getCandidates();
+                    found += system.getContacts();
+                }
+                best = Math.min(best, elapsed);
+            }
+            System.out.printf("%d balls: collide %.2f ns/ball/step   %d tested %d touching per step%n", size,
+                    (double) best / size / steps, tested / steps, found / steps);
+        }
+
+    } // end of main()
+
+    // the balls both models and every pool start from
+    private static ParticleSystem createBalls(int count, Dimension panel)
+    {
+        ParticleSystem particles = new ParticleSystem(count);
+        Random random = new Random(470);
+        for (int i = 0; i < count; i++)
+        {
+            int radius = 3 + random.nextInt(4);
+            int x = radius + 1 + random.nextInt(panel.width - 2 * radius - 2);
+            int y = radius + 1 + random.nextInt(panel.height - 2 * radius - 2);
+            int dx = (1 + random.nextInt(5)) * (random.nextBoolean() ? 1 : -1);
+            int dy = (1 + random.nextInt(5)) * (random.nextBoolean() ? 1 : -1);
+            particles.add(Color.BLUE, radius, x, y, dx, dy, false);
+        }
+        return particles;
+    }
+
+    // a number that changes if any ball is somewhere else
+    private static long checksum(ParticleSystem particles)
+    {
+        long sum = 0;
+        for (int i = 0; i < particles.size(); i++)
+        {
+            sum = sum * 31 + particles.drawX(i, 1.0);
+            sum = sum * 31 + particles.drawY(i, 1.0);
+        }
+        return sum;
+    }
+
+    // a ball that keeps its own values, the way Ball did before the ParticleSystem
+    private static class ObjectBall {
+
+        private int radius;
+        private int x;
+        private int y;
+        private int dx;
+        private int dy;
+
+        ObjectBall(int radius, int x, int y, int dx, int dy)
+        {
+            this.radius = radius;
+            this.x = x;
+            this.y = y;
+            this.dx = dx;
+            this.dy = dy;
+        }
+
+        void move(Dimension d)
+        {
+            if (x <= radius || x >= (d.width - radius))
+            {
+                dx *= -1;
+            }
+            if (y <= radius || y >= (d.height - radius))
+            {
+                dy *= -1;
+            }
+            x += dx;
+            y += dy;
+        }
+
+    } // end of ObjectBall class
+
+} // end of the ParticleBenchmark class
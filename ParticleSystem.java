@@ -0,0 +1,651 @@
+/**********************************************************
+ * Class: ParticleSystem                                  *
+ *                                                        *
+ * Author: Zubaidah Alqaisi                               *
+ *                                                        *
+ * Private members: count, x, y, dx, dy, previousX,       *
+ *                  previousY, radius, color, heard,      *
+ *                  heardCount, front, back, CHUNK,       *
+ *                  StepTask, maxRadius, cellOf, cellStart*
+ *                  sorted, candidates, contacts          *
+ *                                                        *
+ * Public members: ParticleSystem(), add(), size(),       *
+ *                 step(), move(), collide(),             *
+ *                 countContacts(),                       *
+ *                 publish(), front(), drawX(), drawY(),  *
+ *                 getX(), getY(), getDx(), getDy(),      *
+ *                 setPosition(), setVelocity(),          *
+ *                 getRadius(), getColor(), getCandidates,*
+ *                 getContacts(), Snapshot                *
+ *                                                        *
+ * Purpose: Keeps every bouncing ball in a set of         *
+ *          primitive arrays, one per value, instead of   *
+ *          one object per ball. A step walks each array  *
+ *          from start to end in a loop without calls, so *
+ *          the JIT can turn it into vector instructions, *
+ *          and a hundred thousand balls fit in a few MB. *
+ *          A Ball is a view of one index in a system.    *
+ *          A step can be split over the threads of a     *
+ *          ForkJoinPool; every ball only depends on its  *
+ *          own values, so the result is the same for any *
+ *          number of threads. The positions are handed to*
+ *          the painter in one of two snapshots: the step *
+ *          never waits for painting, and painting never  *
+ *          sees half a step.                             *
+ *          collide() bounces the balls off each other. A *
+ *          grid of cells as wide as the largest ball is  *
+ *          built every step, and each ball is only tested*
+ *          against the balls in its own cell and the ones*
+ *          next to it, so the cost grows with the number *
+ *          of balls rather than with its square.         *
+ *********************************************************/
+
+import java.awt.*;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+public class ParticleSystem {
+
+    // the number of balls, and their values; only the first count entries of each array are used
+    private int count = 0;
+    private float[] x;
+    private float[] y;
+    private float[] dx;
+    private float[] dy;
+    private float[] previousX;      // where each ball was before the last step, for drawing between steps
+    private float[] previousY;
+    private float[] radius;
+    private Color[] color;
+
+    // the few balls whose bounces are heard, checked apart so the loops over every ball stay simple
+    private int[] heard = new int[4];
+    private int heardCount = 0;
+
+    // the positions the painter reads, and the ones the next publish() fills in
+    private Snapshot front = new Snapshot();
+    private Snapshot back = new Snapshot();
+
+    // balls moved by one task of a parallel step, small enough to spread, large enough to be worth a task
+    private static final int CHUNK = 16384;
+
+    // the largest radius, which sets the size of the cells of the collision grid
+    private float maxRadius = 0;
+
+    // the collision grid: the cell of each ball, and the balls sorted by cell with where each cell starts
+    private int[] cellOf = new int[0];
+    private int[] cellStart = new int[0];
+    private int[] sorted = new int[0];
+
+    // pairs of balls tested and pairs found touching by the last collide() or countContacts()
+    private int candidates = 0;
+    private int contacts = 0;
+
+    /******************************************************
+     * Class: Snapshot                                    *
+     * Purpose: The positions of every ball at one moment *
+     *          and how far the next step had come, to    *
+     *          draw them from. Lock it while reading.    *
+     */
+
+    public static class Snapshot {
+
+        private int count = 0;
+        private float[] x = new float[0];
+        private float[] y = new float[0];
+        private float[] previousX = new float[0];
+        private float[] previousY = new float[0];
+        private double alpha = 1.0;
+
+        // the number of balls
+        public int size() {
+            return count;
+        }
+
+        // the centre a ball is drawn at, between its last two positions
+        public int drawX(int index) {
+            return (int) Math.round(previousX[index] + (x[index] - previousX[index]) * alpha);
+        }
+
+        public int drawY(int index) {
+            return (int) Math.round(previousY[index] + (y[index] - previousY[index]) * alpha);
+        }
+
+    } // end of Snapshot class
+
+    /*******************************************************
+     * Function: ParticleSystem()                          *
+     * Purpose: constructor                                *
+     * @param capacity the balls there is room for before  *
+     *        the arrays have to grow                      *
+     * Return: none                                        *
+     */
+
+    public ParticleSystem(int capacity)
+    {
+        capacity = Math.max(capacity, 1);
+        x = new float[capacity];
+        y = new float[capacity];
+        dx = new float[capacity];
+        dy = new float[capacity];
+        previousX = new float[capacity];
+        previousY = new float[capacity];
+        radius = new float[capacity];
+        color = new Color[capacity];
+
+    } // end of ParticleSystem()
+
+    /*******************************************************
+     * Function: add()                                     *
+     * Purpose: Adds a ball, growing the arrays if they are*
+     *          full.                                      *
+     * @param inColor                                      *
+     * @param inRadius                                     *
+     * @param inX                                          *
+     * @param inY                                          *
+     * @param inDx the distance moved per step across      *
+     * @param inDy the distance moved per step down        *
+     * @param inSound true if its bounces are heard        *
+     * Return: the index of the new ball                   *
+     */
+
+    public int add(Color inColor, float inRadius, float inX, float inY, float inDx, float inDy, boolean inSound)
+    {
+        if (count == x.length)
+        {
+            int capacity = x.length * 2;
+            x = Arrays.copyOf(x, capacity);
+            y = Arrays.copyOf(y, capacity);
+            dx = Arrays.copyOf(dx, capacity);
+            dy = Arrays.copyOf(dy, capacity);
+            previousX = Arrays.copyOf(previousX, capacity);
+            previousY = Arrays.copyOf(previousY, capacity);
+            radius = Arrays.copyOf(radius, capacity);
+            color = Arrays.copyOf(color, capacity);
+        }
+
+        x[count] = inX;
+        y[count] = inY;
+        previousX[count] = inX;
+        previousY[count] = inY;
+        dx[count] = inDx;
+        dy[count] = inDy;
+        radius[count] = inRadius;
+        color[count] = inColor;
+        maxRadius = Math.max(maxRadius, inRadius);
+        if (inSound)
+        {
+            if (heardCount == heard.length)
+            {
+                heard = Arrays.copyOf(heard, heardCount * 2);
+            }
+            heard[heardCount++] = count;
+        }
+        return count++;
+
+    } // end of add()
+
+    // the number of balls
+    public int size() {
+        return count;
+    }
+
+    /*******************************************************
+     * Function: step()                                    *
+     * Purpose: Moves every ball one step, reversing its   *
+     *          direction where it touches a wall of the   *
+     *          panel first, the same as Ball.move() always*
+     *          did. Each pass is a plain loop over the    *
+     *          arrays: the positions are saved with one   *
+     *          copy, each pair of walls flips one velocity*
+     *          array, and the move adds each velocity     *
+     *          array to its position array.               *
+     * @param d the size of the panel                      *
+     * Return: the number of bounces of balls that are     *
+     *         heard                                       *
+     */
+
+    public int step(Dimension d)
+    {
+        return step(d, 0, count);
+
+    } // end of step()
+
+    /*******************************************************
+     * Function: step()                                    *
+     * Purpose: Moves the balls from one index up to       *
+     *          another one step, see above.               *
+     * @param d the size of the panel                      *
+     * @param from first ball                              *
+     * @param to one past the last ball                    *
+     * Return: the number of bounces of balls that are     *
+     *         heard                                       *
+     */
+
+    public int step(Dimension d, int from, int to)
+    {
+        float width = d.width;
+        float height = d.height;
+        float[] x = this.x;
+        float[] y = this.y;
+        float[] dx = this.dx;
+        float[] dy = this.dy;
+        float[] radius = this.radius;
+
+        System.arraycopy(x, from, previousX, from, to - from);
+        System.arraycopy(y, from, previousY, from, to - from);
+
+        // the balls that are heard, before the walls turn them around
+        int bounces = 0;
+        for (int k = 0; k < heardCount; k++)
+        {
+            int i = heard[k];
+            if (i >= from && i < to && touchesWall(i, d))
+            {
+                bounces++;
+            }
+        }
+
+        // the walls: a ball on or past one turns around
+        for (int i = from; i < to; i++)
+        {
+            float r = radius[i];
+            dx[i] = x[i] <= r || x[i] >= width - r ? -dx[i] : dx[i];
+        }
+        for (int i = from; i < to; i++)
+        {
+            float r = radius[i];
+            dy[i] = y[i] <= r || y[i] >= height - r ? -dy[i] : dy[i];
+        }
+
+        // the move
+        for (int i = from; i < to; i++)
+        {
+            x[i] += dx[i];
+        }
+        for (int i = from; i < to; i++)
+        {
+            y[i] += dy[i];
+        }
+        return bounces;
+
+    } // end of step()
+
+    /*******************************************************
+     * Function: move()                                    *
+     * Purpose: Moves one ball one step, for Ball.move().  *
+     * @param index                                        *
+     * @param d the size of the panel                      *
+     * Return: true if the ball bounced off a wall         *
+     */
+
+    public boolean move(int index, Dimension d)
+    {
+        boolean bounce = touchesWall(index, d);
+        step(d, index, index + 1);
+        return bounce;
+
+    } // end of move()
+
+    /*******************************************************
+     * Function: step()                                    *
+     * Purpose: Moves every ball one step, split into      *
+     *          chunks that the threads of the pool move at*
+     *          the same time. The balls end in the same   *
+     *          places as with one thread.                 *
+     * @param d the size of the panel                      *
+     * @param pool the threads, or null to use this one    *
+     * Return: the number of bounces of balls that are     *
+     *         heard                                       *
+     */
+
+    public int step(Dimension d, ForkJoinPool pool)
+    {
+        if (pool == null || pool.getParallelism() == 1 || count <= CHUNK)
+        {
+            return step(d);
+        }
+        return pool.invoke(new StepTask(d, 0, count));
+
+    } // end of step()
+
+    /******************************************************
+     * Class: StepTask                                    *
+     * Purpose: Moves a range of balls, halving it until  *
+     *          it is no more than one chunk.             *
+     */
+
+    private class StepTask extends RecursiveTask<Integer> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Dimension d;
+        private final int from;
+        private final int to;
+
+        StepTask(Dimension d, int from, int to)
+        {
+            this.d = d;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (to - from <= CHUNK)
+            {
+                return step(d, from, to);
+            }
+            int middle = (from + to) >>> 1;
+            StepTask left = new StepTask(d, from, middle);
+            left.fork();
+            int right = new StepTask(d, middle, to).compute();
+            return left.join() + right;
+        }
+
+    } // end of StepTask class
+
+    /*******************************************************
+     * Function: publish()                                 *
+     * Purpose: Copies the positions into the snapshot the *
+     *          painter is not reading and makes it the    *
+     *          front one. Only the thread that steps the  *
+     *          balls may call it, while no step runs.     *
+     * @param alpha how far the next step has come         *
+     * Return: none void                                   *
+     */
+
+    public void publish(double alpha)
+    {
+        Snapshot next;
+        synchronized (this)
+        {
+            next = back;
+        }
+
+        // waits only if the painter is still drawing this snapshot from before the last publish
+        synchronized (next)
+        {
+            if (next.x.length < count)
+            {
+                next.x = new float[x.length];
+                next.y = new float[x.length];
+                next.previousX = new float[x.length];
+                next.previousY = new float[x.length];
+            }
+            System.arraycopy(x, 0, next.x, 0, count);
+            System.arraycopy(y, 0, next.y, 0, count);
+            System.arraycopy(previousX, 0, next.previousX, 0, count);
+            System.arraycopy(previousY, 0, next.previousY, 0, count);
+            next.count = count;
+            next.alpha = alpha;
+        }
+
+        synchronized (this)
+        {
+            back = front;
+            front = next;
+        }
+
+    } // end of publish()
+
+    // the snapshot to draw from, lock it while reading
+    public synchronized Snapshot front() {
+        return front;
+    }
+
+    /*******************************************************
+     * Function: collide()                                 *
+     * Purpose: Bounces every pair of balls that touch off *
+     *          each other, elastically, with the weight of*
+     *          a ball going with its area. The balls are  *
+     *          sorted into a grid of cells at least one   *
+     *          ball wide, so two balls that touch are in  *
+     *          the same or next cells, and each pair of   *
+     *          cells is tested once. Balls that overlap   *
+     *          are pushed apart, but not out of the panel.*
+     *          It runs on one thread, in the same order   *
+     *          every time, so the result does not depend  *
+     *          on the pool that moved the balls.          *
+     * @param d the size of the panel                      *
+     * Return: the number of pairs of balls that touch     *
+     */
+
+    public int collide(Dimension d)
+    {
+        return collide(d, true);
+
+    } // end of collide()
+
+    /*******************************************************
+     * Function: countContacts()                           *
+     * Purpose: Finds the pairs of balls that touch with   *
+     *          the same grid as collide(), but moves      *
+     *          nothing, so the count can be checked       *
+     *          against testing every pair.                *
+     * @param d the size of the panel                      *
+     * Return: the number of pairs of balls that touch     *
+     */
+
+    public int countContacts(Dimension d)
+    {
+        return collide(d, false);
+
+    } // end of countContacts()
+
+    // test the pairs in the grid, and bounce the ones that touch if push is true
+    private int collide(Dimension d, boolean push)
+    {
+        candidates = 0;
+        contacts = 0;
+        if (count < 2)
+        {
+            return 0;
+        }
+
+        // build the grid: count the balls of each cell, then place them after the cells before it
+        float cell = Math.max(2 * maxRadius, 1);
+        int columns = (int) (d.width / cell) + 1;
+        int rows = (int) (d.height / cell) + 1;
+        int cells = columns * rows;
+        if (cellStart.length < cells + 1)
+        {
+            cellStart = new int[cells + 1];
+        }
+        else
+        {
+            Arrays.fill(cellStart, 0, cells + 1, 0);
+        }
+        if (cellOf.length < count)
+        {
+            cellOf = new int[x.length];
+            sorted = new int[x.length];
+        }
+        for (int i = 0; i < count; i++)
+        {
+            int column = Math.min(Math.max((int) (x[i] / cell), 0), columns - 1);
+            int row = Math.min(Math.max((int) (y[i] / cell), 0), rows - 1);
+            cellOf[i] = row * columns + column;
+            cellStart[cellOf[i] + 1]++;
+        }
+        for (int c = 0; c < cells; c++)
+        {
+            cellStart[c + 1] += cellStart[c];
+        }
+        int[] next = Arrays.copyOf(cellStart, cells);
+        for (int i = 0; i < count; i++)
+        {
+            sorted[next[cellOf[i]]++] = i;
+        }
+
+        // test each cell against itself and the cells to its right and below, so every pair is tested once
+        for (int row = 0; row < rows; row++)
+        {
+            for (int column = 0; column < columns; column++)
+            {
+                int c = row * columns + column;
+                for (int a = cellStart[c]; a < cellStart[c + 1]; a++)
+                {
+                    int i = sorted[a];
+                    for (int b = a + 1; b < cellStart[c + 1]; b++)
+                    {
+                        bounce(i, sorted[b], d, push);
+                    }
+                    if (column + 1 < columns)
+                    {
+                        bounceCell(i, c + 1, d, push);
+                    }
+                    if (row + 1 < rows)
+                    {
+                        if (column > 0)
+                        {
+                            bounceCell(i, c + columns - 1, d, push);
+                        }
+                        bounceCell(i, c + columns, d, push);
+                        if (column + 1 < columns)
+                        {
+                            bounceCell(i, c + columns + 1, d, push);
+                        }
+                    }
+                }
+            }
+        }
+        return contacts;
+    }
+
+    // tests one ball against every ball of a cell
+    private void bounceCell(int i, int c, Dimension d, boolean push)
+    {
+        for (int b = cellStart[c]; b < cellStart[c + 1]; b++)
+        {
+            bounce(i, sorted[b], d, push);
+        }
+    }
+
+    /*******************************************************
+     * Function: bounce()                                  *
+     * Purpose: Tests if two balls touch and, if they do,  *
+     *          pushes them apart and, if they are moving  *
+     *          towards each other, swaps the parts of     *
+     *          their velocities along the line between    *
+     *          them the way two elastic bodies do.        *
+     * @param i one ball                                   *
+     * @param j the other ball                             *
+     * @param d the size of the panel                      *
+     * @param push false to only count the pair            *
+     * Return: none void                                   *
+     */
+
+    private void bounce(int i, int j, Dimension d, boolean push)
+    {
+        candidates++;
+        float nx = x[j] - x[i];
+        float ny = y[j] - y[i];
+        float reach = radius[i] + radius[j];
+        float distance2 = nx * nx + ny * ny;
+        if (distance2 >= reach * reach || distance2 == 0)
+        {
+            return;
+        }
+        contacts++;
+        if (!push)
+        {
+            return;
+        }
+
+        float distance = (float) Math.sqrt(distance2);
+        nx /= distance;
+        ny /= distance;
+        float massI = radius[i] * radius[i];
+        float massJ = radius[j] * radius[j];
+        float total = massI + massJ;
+
+        // only balls moving towards each other bounce, ones already moving apart are left to separate
+        float closing = (dx[j] - dx[i]) * nx + (dy[j] - dy[i]) * ny;
+        if (closing < 0)
+        {
+            float impulse = 2 * closing / total;
+            dx[i] += impulse * massJ * nx;
+            dy[i] += impulse * massJ * ny;
+            dx[j] -= impulse * massI * nx;
+            dy[j] -= impulse * massI * ny;
+        }
+
+        // push them apart, the lighter ball the most
+        float overlap = reach - distance;
+        x[i] = clamp(x[i] - overlap * massJ / total * nx, radius[i], d.width - radius[i]);
+        y[i] = clamp(y[i] - overlap * massJ / total * ny, radius[i], d.height - radius[i]);
+        x[j] = clamp(x[j] + overlap * massI / total * nx, radius[j], d.width - radius[j]);
+        y[j] = clamp(y[j] + overlap * massI / total * ny, radius[j], d.height - radius[j]);
+
+    } // end of bounce()
+
+    // keeps a position between two walls
+    private static float clamp(float value, float low, float high)
+    {
+        return Math.max(low, Math.min(value, high));
+    }
+
+    // the pairs of balls tested and found touching by the last collide() or countContacts()
+    public int getCandidates() {
+        return candidates;
+    }
+
+    public int getContacts() {
+        return contacts;
+    }
+
+    // tests if a ball is on or past a wall, so the next step turns it around
+    private boolean touchesWall(int i, Dimension d)
+    {
+        return x[i] <= radius[i] || x[i] >= d.width - radius[i] || y[i] <= radius[i] || y[i] >= d.height - radius[i];
+    }
+
+    // the centre a ball is drawn at, between its last two positions
+    public int drawX(int index, double alpha) {
+        return (int) Math.round(previousX[index] + (x[index] - previousX[index]) * alpha);
+    }
+
+    public int drawY(int index, double alpha) {
+        return (int) Math.round(previousY[index] + (y[index] - previousY[index]) * alpha);
+    }
+
+    // the values of one ball, for Ball
+    public float getX(int index) {
+        return x[index];
+    }
+
+    public float getY(int index) {
+        return y[index];
+    }
+
+    public float getDx(int index) {
+        return dx[index];
+    }
+
+    public float getDy(int index) {
+        return dy[index];
+    }
+
+    // put a ball somewhere else, it is drawn there at once rather than moving there between two steps
+    public void setPosition(int index, float inX, float inY) {
+        x[index] = inX;
+        y[index] = inY;
+        previousX[index] = inX;
+        previousY[index] = inY;
+    }
+
+    public void setVelocity(int index, float inDx, float inDy) {
+        dx[index] = inDx;
+        dy[index] = inDy;
+    }
+
+    public int getRadius(int index) {
+        return Math.round(radius[index]);
+    }
+
+    public Color getColor(int index) {
+        return color[index];
+    }
+
+} // end of the ParticleSystem class
@@ -0,0 +1,155 @@
+/**********************************************************
+ * Class: SAXParserPool                                   *
+ *                                                        *
+ * Author: Zubaidah Alqaisi                               *
+ *                                                        *
+ * Private members: factory, idle, maxIdle, created,      *
+ *                  reused                                *
+ *                                                        *
+ * Public members: SAXParserPool(), getShared(),          *
+ *                 acquire(), release(), getCreated(),    *
+ *                 getReused()                            *
+ *                                                        *
+ * Purpose: Hands out SAX parsers to the download threads *
+ *          and takes them back when a feed is parsed, so *
+ *          the factory lookup and the parser set-up are  *
+ *          paid once instead of for every feed. The      *
+ *          factory is configured once (namespace aware,  *
+ *          as AlbumHandler needs) and the pool is safe to*
+ *          use from many threads.                        *
+ *********************************************************/
+
+import org.xml.sax.SAXException;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SAXParserPool {
+
+    // the pool every download uses
+    private static SAXParserPool shared;
+
+    // the factory, configured once
+    private final SAXParserFactory factory;
+
+    // parsers that are not in use, and how many of them are kept
+    private final ConcurrentLinkedQueue<SAXParser> idle = new ConcurrentLinkedQueue<SAXParser>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final int maxIdle;
+
+    // statistics about the pool
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+
+    /*******************************************************
+     * Function: SAXParserPool()                           *
+     * Purpose: constructor: creates and configures the    *
+     *          factory.                                   *
+     * @param maxIdle most parsers kept when not in use    *
+     * Return: none                                        *
+     */
+
+    public SAXParserPool(int maxIdle)
+    {
+        this.maxIdle = maxIdle;
+        factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);    // AlbumHandler dispatches on namespace URI and local name
+
+    } // end of SAXParserPool()
+
+    /*******************************************************
+     * Function: getShared()                               *
+     * Purpose: Returns the pool shared by all downloads,  *
+     *          creating it the first time.                *
+     * Argument: none                                      *
+     * Return: the shared pool                             *
+     */
+
+    public static synchronized SAXParserPool getShared()
+    {
+        if (shared == null)
+        {
+            shared = new SAXParserPool(16);
+        }
+        return shared;
+
+    } // end of getShared()
+
+    /*******************************************************
+     * Function: acquire()                                 *
+     * Purpose: Returns an idle parser, or a new one if all*
+     *          of them are in use.                        *
+     * Argument: none                                      *
+     * @throws ParserConfigurationException                *
+     * @throws SAXException                                *
+     * Return: a parser that must be given back to release *
+     */
+
+    public SAXParser acquire() throws ParserConfigurationException, SAXException
+    {
+        SAXParser parser = idle.poll();
+        if (parser != null)
+        {
+            idleCount.decrementAndGet();
+            reused.incrementAndGet();
+            return parser;
+        }
+
+        // SAXParserFactory is not thread safe
+        synchronized (factory)
+        {
+            parser = factory.newSAXParser();
+        }
+        created.incrementAndGet();
+        return parser;
+
+    } // end of acquire()
+
+    /*******************************************************
+     * Function: release()                                 *
+     * Purpose: Resets a parser and keeps it for the next  *
+     *          feed. A parser that cannot be reset, or one*
+     *          more than the pool keeps, is dropped.      *
+     * @param parser                                       *
+     * Return: none void                                   *
+     */
+
+    public void release(SAXParser parser)
+    {
+        try {
+            parser.reset();
+        }
+        catch (UnsupportedOperationException e)
+        {
+            return;
+        }
+
+        if (idleCount.incrementAndGet() <= maxIdle)
+        {
+            idle.offer(parser);
+        }
+        else
+        {
+            idleCount.decrementAndGet();
+        }
+
+    } // end of release()
+
+    // getters for the statistics
+    public long getCreated() {
+        return created.get();
+    }
+
+    public long getReused() {
+        return reused.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d parsers created, %d reused", getCreated(), getReused());
+    }
+
+} // end of the SAXParserPool class
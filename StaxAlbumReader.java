@@ -0,0 +1,192 @@
+/**********************************************************
+ * Class: StaxAlbumReader                                 *
+ *                                                        *
+ * Author: Zubaidah Alqaisi                               *
+ *                                                        *
+ * Private members: FACTORY                               *
+ *                                                        *
+ * Public members: read()                                 *
+ *                                                        *
+ * Purpose: The pull-parser way of reading albums out of  *
+ *          the feed, next to the SAX AlbumHandler. Each  *
+ *          entry element is read in one go: the values   *
+ *          the caller asked for are pulled directly and  *
+ *          everything else in the entry is skipped.      *
+ *          Reading stops as soon as enough albums have   *
+ *          been found.                                   *
+ *********************************************************/
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+public class StaxAlbumReader {
+
+    // the factory is thread safe once configured, so it is created once
+    private static final XMLInputFactory FACTORY = XMLInputFactory.newInstance();
+
+    static {
+        FACTORY.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        FACTORY.setProperty(XMLInputFactory.IS_COALESCING, true);           // one text event per element
+        FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    }
+
+    // only static helpers, no instances
+    private StaxAlbumReader()
+    {
+    }
+
+    /*******************************************************
+     * Function: read()                                    *
+     * Purpose: Pulls the entries out of the feed and hands*
+     *          each album to the list and the sink.       *
+     * @param stream the feed                              *
+     * @param charset the encoding, or null to read it from*
+     *        the XML prolog                               *
+     * @param limit most albums to read, 0 for all of them *
+     * @param fields the values of each entry to read      *
+     * @param albums                                       *
+     * @param sink                                         *
+     * @throws XMLStreamException                          *
+     * Return: true if reading stopped at the limit        *
+     */
+
+    public static boolean read(InputStream stream, String charset, int limit, Set<Album.Field> fields,
+                               List<Album> albums, Consumer<Album> sink)
+            throws XMLStreamException
+    {
+        // the basic fields fit in the Album itself, anything more needs a Details
+        boolean details = !Album.BASIC_FIELDS.containsAll(fields);
+
+        XMLStreamReader reader = charset == null ? FACTORY.createXMLStreamReader(stream)
+                : FACTORY.createXMLStreamReader(stream, charset);
+        try {
+            while (reader.hasNext())
+            {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT
+                        && "entry".equals(reader.getLocalName()) && AlbumHandler.ATOM_NS.equals(reader.getNamespaceURI()))
+                {
+                    Album album = readEntry(reader, fields, details, albums.size() + 1);
+
+                    // a cancelled download stops here, even if the rest of the feed is already buffered
+                    if (Thread.currentThread().isInterrupted())
+                    {
+                        throw new XMLStreamException("download cancelled");
+                    }
+                    albums.add(album);
+                    sink.accept(album);    // publish the album
+
+                    // stop pulling once enough albums are found
+                    if (limit > 0 && albums.size() >= limit)
+                    {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+        finally {
+            reader.close();     // does not close the stream, the caller owns it
+        }
+
+    } // end of read()
+
+    /*******************************************************
+     * Function: readEntry()                               *
+     * Purpose: Reads one entry element, the reader is left*
+     *          on its closing tag.                        *
+     * @param reader                                       *
+     * @param fields the values to read                    *
+     * @param details true if fields has more than the     *
+     *        basic ones                                   *
+     * @param rank the place of the entry in the feed      *
+     * @throws XMLStreamException                          *
+     * Return: the album                                   *
+     */
+
+    private static Album readEntry(XMLStreamReader reader, Set<Album.Field> fields, boolean details, int rank)
+            throws XMLStreamException
+    {
+        String id = null;
+        String title = null;
+        String artist = null;
+        String category = null;
+        String releaseDate = null;
+        String price = null;
+        String currency = null;
+        List<String> images = null;
+
+        // depth 1 is the entry itself
+        int depth = 1;
+        while (depth > 0)
+        {
+            int event = reader.next();
+
+            if (event == XMLStreamConstants.END_ELEMENT)
+            {
+                depth--;
+            }
+            else if (event == XMLStreamConstants.START_ELEMENT)
+            {
+                String uri = reader.getNamespaceURI();
+                String name = reader.getLocalName();
+
+                // elements directly inside the entry that hold album data
+                boolean atom = depth == 1 && AlbumHandler.ATOM_NS.equals(uri);
+                boolean itunes = depth == 1 && AlbumHandler.ITUNES_NS.equals(uri);
+
+                if (atom && "id".equals(name) && fields.contains(Album.Field.ID))
+                {
+                    id = reader.getElementText().trim();
+                }
+                else if (itunes && "name".equals(name) && fields.contains(Album.Field.NAME))
+                {
+                    title = reader.getElementText();      // leaves the reader on the closing tag
+                }
+                else if (itunes && "artist".equals(name) && fields.contains(Album.Field.ARTIST))
+                {
+                    artist = reader.getElementText();
+                }
+                else if (itunes && "releaseDate".equals(name) && fields.contains(Album.Field.RELEASE_DATE))
+                {
+                    releaseDate = reader.getElementText().trim();
+                }
+                else if (itunes && "image".equals(name) && fields.contains(Album.Field.IMAGES))
+                {
+                    if (images == null)
+                    {
+                        images = new ArrayList<String>(3);     // the feed has three sizes of every image
+                    }
+                    images.add(reader.getElementText().trim());
+                }
+                else
+                {
+                    // only the first category of the entry is used
+                    if (atom && category == null && "category".equals(name) && fields.contains(Album.Field.CATEGORY))
+                    {
+                        category = reader.getAttributeValue(null, "label");
+                    }
+                    // the amount and currency are attributes, the text is only the formatted price
+                    else if (itunes && "price".equals(name) && fields.contains(Album.Field.PRICE))
+                    {
+                        price = reader.getAttributeValue(null, "amount");
+                        currency = reader.getAttributeValue(null, "currency");
+                    }
+                    depth++;
+                }
+            }
+        }
+
+        Album.Details more = !details ? null : new Album.Details(
+                fields.contains(Album.Field.RANK) ? rank : 0, releaseDate, price, currency, images);
+        return new Album(id, title, artist, category, more);
+
+    } // end of readEntry()
+
+} // end of the StaxAlbumReader class
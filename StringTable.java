@@ -0,0 +1,67 @@
+/**********************************************************
+ * Class: StringTable                                     *
+ *                                                        *
+ * Author: Zubaidah Alqaisi                               *
+ *                                                        *
+ * Private members: ids, values                           *
+ *                                                        *
+ * Public members: intern(), get(), size(), clear()       *
+ *                                                        *
+ * Purpose: A dictionary that gives every distinct string *
+ *          a small int id. A value that repeats (a music *
+ *          category, a popular artist) is stored once and*
+ *          referred to by its id everywhere else.        *
+ *********************************************************/
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+public class StringTable {
+
+    // id of every string, and the string of every id
+    private final HashMap<String, Integer> ids = new HashMap<String, Integer>();
+    private final ArrayList<String> values = new ArrayList<String>();
+
+    /*******************************************************
+     * Function: intern()                                  *
+     * Purpose: Returns the id of a string, adding it to   *
+     *          the table the first time it is seen.       *
+     * @param value                                        *
+     * Return: the id, or -1 for null                      *
+     */
+
+    public int intern(String value)
+    {
+        if (value == null)
+        {
+            return -1;
+        }
+
+        Integer id = ids.get(value);
+        if (id == null)
+        {
+            id = values.size();
+            ids.put(value, id);
+            values.add(value);
+        }
+        return id;
+
+    } // end of intern()
+
+    // the string of an id, null for -1
+    public String get(int id) {
+        return id < 0 ? null : values.get(id);
+    }
+
+    // number of distinct strings in the table
+    public int size() {
+        return values.size();
+    }
+
+    // forget every string, the ids handed out before are no longer valid
+    public void clear() {
+        ids.clear();
+        values.clear();
+    }
+
+} // end of the StringTable class
@@ -3,11 +3,19 @@
  *                                                        *
  * Author: Zubaidah Alqaisi                               *
  *                                                        *
- * Private members: timeLabel, albumInfo, albumData,      *
- *                  type, limit, second, timer, download()*
- *                  setTime().                            *
+ * Private members: timeLabel, albumInfo, allFeeds,       *
+ *                  reportLabel, reportColor, albumModel, *
+ *                  albumData,                            *
+ *                  filterField, facetLabel,              *
+ *                  filterMatches, engine, type,          *
+ *                  limit, second, timer, task,           *
+ *                  generation, shownBefore, unfinished,  *
+ *                  download(), setTime().                *
  * Public members: XMLDownloadPanel(), actionPerformed(), *
- *                 displayData().                         *
+ *                 cancelDownload(), showCached(),        *
+ *                 showSnapshot(),                        *
+ *                 displayData(),                         *
+ *                 displayReport().                       *
  * Purpose: This is a subclass of JPanel, and contain most*
  *          of the user interface for this assignment. It *
  *        will handle action events from the “Get Albums” *
@@ -15,8 +23,20 @@
  *********************************************************/
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.table.TableRowSorter;
 import java.awt.*;
 import java.awt.event.ActionEvent;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import static javax.swing.SwingWorker.StateValue.DONE;
 import static javax.swing.SwingWorker.StateValue.STARTED;
 
@@ -28,8 +48,21 @@ public class XMLDownloadPanel extends JPanel {
     // setting up the get album button
     private JButton albumInfo = new JButton("Get Albums");
 
-    // setting up the text area
-    private JTextArea albumData = new JTextArea(30, 60);
+    // setting up the button that downloads every type/limit/explicit feed at once
+    private JButton allFeeds = new JButton("Get All Feeds");
+
+    // label for the time each download took
+    private JLabel reportLabel = new JLabel(" ");
+    private Color reportColor = reportLabel.getForeground();
+
+    // setting up the album table and the model it shows
+    private AlbumTableModel albumModel = new AlbumTableModel();
+    private JTable albumData = new JTable(albumModel);
+
+    // setting up the search field, the category counts of its results, and the store rows it matches
+    private JTextField filterField = new JTextField(24);
+    private JLabel facetLabel = new JLabel(" ");
+    private BitSet filterMatches = new BitSet();
 
     // private data members of the class
     private String type;
@@ -39,6 +72,17 @@ public class XMLDownloadPanel extends JPanel {
     private int second = 0;
     private Timer timer;                    // setting a storage for the timer
 
+    // downloads the feeds in parallel, at most 8 at a time
+    private FeedFetchEngine engine = new FeedFetchEngine(8);
+
+    // the download running now, and its number; chunks of an older number come from a cancelled download
+    private XMLDownloadTask task;
+    private int generation = 0;
+
+    // what the feeds of the running download showed before it, and the feeds it changed but has not finished
+    private Map<FeedKey, List<Album>> shownBefore = new HashMap<FeedKey, List<Album>>();
+    private Set<FeedKey> unfinished = new HashSet<FeedKey>();
+
     // setters to set the value of type, limit, and explicit
     public void setType(String type) {
         this.type = type;
@@ -70,13 +114,27 @@ public class XMLDownloadPanel extends JPanel {
         JPanel panel = new JPanel(new FlowLayout());
         // create a scroll pane to scroll through data
         JScrollPane pane = new JScrollPane(albumData);
+
+        // every row has the same height, so the table never measures rows and reuses one renderer per column
+        albumData.setRowHeight(albumData.getFontMetrics(albumData.getFont()).getHeight() + 4);
+        albumData.setPreferredScrollableViewportSize(new Dimension(660, 480));
+        albumData.setFillsViewportHeight(true);
         //add the button to the upper pane
         panel.add(albumInfo);
         // adding the timer label to the upper pane
         panel.add(timeLabel);
+        panel.add(allFeeds);
+        panel.add(reportLabel);
 
-        add(pane, BorderLayout.CENTER);   // adding text area to the center of the main pannel
+        // the search field and its results go in a panel at the bottom
+        JPanel searchPanel = new JPanel(new FlowLayout(FlowLayout.LEADING));
+        searchPanel.add(new JLabel("Search:"));
+        searchPanel.add(filterField);
+        searchPanel.add(facetLabel);
+
+        add(pane, BorderLayout.CENTER);   // adding the album table to the center of the main pannel
         add(panel, BorderLayout.PAGE_START);   // add the pannel to the top
+        add(searchPanel, BorderLayout.PAGE_END);
 
         // default values for type, limit, and explicit
         type = "new-music";
@@ -86,59 +144,86 @@ public class XMLDownloadPanel extends JPanel {
         // actionListener for the get album button
         albumInfo.addActionListener(this::actionPerformed);
 
+        // actionListener for the get all feeds button
+        allFeeds.addActionListener(e -> download(FeedKey.allFeeds()));
+
+        // filter the table on every key typed in the search field
+        filterField.getDocument().addDocumentListener(new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) {
+                filter();
+            }
+
+            public void removeUpdate(DocumentEvent e) {
+                filter();
+            }
+
+            public void changedUpdate(DocumentEvent e) {
+                filter();
+            }
+        });
+
+        // rows that arrive while a filter is on are searched again; this listener is added after the
+        // table's own, so it runs first and the sorter sees the new matches
+        albumModel.addTableModelListener(e -> {
+            if (albumData.getRowSorter() != null)
+            {
+                search();
+            }
+        });
+
     } // end of XMLDownloadPanel()
 
     /******************************************************
      * Function: actionPerformed()                        *
      * Purpose: To handle action events from the button   *
-     *          like clear up the text area and call the  *
-     *          download() method.                        *
+     *          by calling the download() method. The     *
+     *          table is not cleared, the download only   *
+     *          changes the rows that differ.             *
      * @param e                                           *
      * Return: none void                                  *
      */
 
     public void actionPerformed(ActionEvent e)
     {
-        // clear the text area
-        albumData.setText("");
-
-        download();
+        download(Collections.singletonList(new FeedKey(type, limit, explicit)));
 
     } // end of actionPerformed() method
 
     /**********************************************************
      * Function: download()                                   *
-     * Purpose: To initiate the download of the XML data.     *
-     * Argument: none                                         *
+     * Purpose: To initiate the download of the XML data of   *
+     *          one or more feeds. A download still running is *
+     *          cancelled first, so a click never waits for a  *
+     *          stalled feed.                                 *
+     * @param feeds                                           *
      * Return: none void                                      *
      */
 
-    private void download()
+    private void download(List<FeedKey> feeds)
     {
-        //Build a URL string for the requested fetch
-        String albumUrl = "https://rss.itunes.apple.com/api/v1/us/itunes-music/";
-        albumUrl += type + "/all/" + limit + "/";
+        cancelDownload();
 
-        // if explicit is Yes, add it to the url
-        if (explicit) {
-            albumUrl += "explicit.atom";
-        }
-        else
+        // show only the requested feeds, and take a copy of what is shown for them to compare with
+        albumModel.retainFeeds(feeds);
+        Map<FeedKey, List<Album>> previous = new HashMap<FeedKey, List<Album>>();
+        for (FeedKey feed : feeds)
         {
-            albumUrl += "non-explicit.atom";   // if the explicit is No, add non to the url
+            previous.put(feed, albumModel.getAlbums(feed));
         }
+        shownBefore = previous;
 
-        // creating a new XMLDownloadTask and pass it the URL string and a reference to thistask
-        XMLDownloadTask task = new XMLDownloadTask(albumUrl,this);
+        // creating a new XMLDownloadTask and pass it the feeds, the albums shown, the engine, a reference to this panel
+        // and its number
+        int current = ++generation;
+        task = new XMLDownloadTask(feeds, previous, engine, this, current);
 
-        // disabling the button so it cannot be clicked multiple time while the program is processing
+        // run the timer while the download runs; the buttons stay enabled, a new click cancels this download
         task.addPropertyChangeListener(g -> {
-            if (g.getPropertyName() == "state")
+            if (g.getPropertyName() == "state" && current == generation)
             {
                 if ( (SwingWorker.StateValue) g.getNewValue() == STARTED)
                 {
-                    albumInfo.setEnabled(false);     // disable the get album button
-                    second = 0;                   // reset the timer when enabling the button again
+                    second = 0;                   // reset the timer for the new download
                     timeLabel.setText(setTime(second));    // update the timer to match the updating seconds
 
                     // setting up the timer and start it
@@ -149,10 +234,9 @@ public class XMLDownloadPanel extends JPanel {
 
                     timer.start();  // start up the timer
                 }
-                if ((SwingWorker.StateValue) g.getNewValue() == DONE)
+                if ((SwingWorker.StateValue) g.getNewValue() == DONE && timer != null)
                 {
-                    albumInfo.setEnabled(true);   // enable the button when processing is done
-                    timer.stop();    // stoping the timer when disapling the button
+                    timer.stop();    // stoping the timer when the download is done
 
                 } // end of inner if
 
@@ -163,6 +247,162 @@ public class XMLDownloadPanel extends JPanel {
 
     } // end of download()
 
+    /*******************************************************
+     * Function: cancelDownload()                          *
+     * Purpose: Stops the download that is running. Its    *
+     *          connections are closed at once, any albums *
+     *          it still publishes are ignored, and the    *
+     *          feeds it had only partly shown get their   *
+     *          old rows back.                             *
+     * Argument: none                                      *
+     * Return: none void                                   *
+     */
+
+    public void cancelDownload()
+    {
+        generation++;    // whatever the old task still sends is stale from now on
+        if (task != null && !task.isDone())
+        {
+            task.cancel(true);
+            if (timer != null)
+            {
+                timer.stop();
+            }
+            report("download cancelled");
+        }
+        for (FeedKey feed : unfinished)
+        {
+            albumModel.setFeed(feed, shownBefore.get(feed));
+        }
+        unfinished.clear();
+        task = null;
+
+    } // end of cancelDownload()
+
+    /*******************************************************
+     * Function: showCached()                              *
+     * Purpose: Shows the albums of the selected feed right*
+     *          away if they are still in the album cache. *
+     *          Nothing changes on a miss, the user can    *
+     *          click "Get Albums" to download the feed.   *
+     * Argument: none                                      *
+     * Return: true if the feed was shown from the cache   *
+     */
+
+    public boolean showCached()
+    {
+        FeedKey feed = new FeedKey(type, limit, explicit);
+        List<Album> albums = AlbumCache.getShared().get(feed);
+        if (albums == null)
+        {
+            return false;
+        }
+
+        // replace the table with the cached albums
+        albumModel.setAlbums(feed, albums);
+        report(albums.size() + " albums from cache");
+        return true;
+
+    } // end of showCached()
+
+    /*******************************************************
+     * Function: showSnapshot()                            *
+     * Purpose: Shows the albums saved by the last session *
+     *          and downloads the same feeds again in the  *
+     *          background, which only changes the rows    *
+     *          that differ. A snapshot that could not be  *
+     *          read is reported in red.                   *
+     * @param catalog the albums of every feed, from       *
+     *        CatalogSnapshot.load()                       *
+     * Return: true if there was anything to show          *
+     */
+
+    public boolean showSnapshot(Map<FeedKey, List<Album>> catalog)
+    {
+        if (catalog.isEmpty())
+        {
+            String failure = CatalogSnapshot.getShared().getFailure();
+            if (failure != null)
+            {
+                report(failure);
+                reportLabel.setForeground(Color.RED);
+            }
+            return false;
+        }
+
+        int count = 0;
+        for (Map.Entry<FeedKey, List<Album>> entry : catalog.entrySet())
+        {
+            AlbumCache.getShared().put(entry.getKey(), entry.getValue());    // switching back to a feed is instant
+            count += entry.getValue().size();
+        }
+        albumModel.setCatalog(catalog);
+        report(count + " albums from last session");
+
+        download(new ArrayList<FeedKey>(catalog.keySet()));
+        return true;
+
+    } // end of showSnapshot()
+
+    /*******************************************************
+     * Function: filter()                                  *
+     * Purpose: Shows only the rows that match the search  *
+     *          field. The sorter is only installed while a*
+     *          filter is on, so an unfiltered table keeps *
+     *          its constant cost per download chunk.      *
+     * Argument: none                                      *
+     * Return: none void                                   *
+     */
+
+    private void filter()
+    {
+        if (filterField.getText().trim().isEmpty())
+        {
+            albumData.setRowSorter(null);
+            facetLabel.setText(" ");
+            return;
+        }
+
+        search();
+
+        // the rows are filtered on the matches found by the index, not by reading the cells
+        TableRowSorter<AlbumTableModel> sorter = new TableRowSorter<AlbumTableModel>(albumModel);
+        sorter.setRowFilter(new RowFilter<AlbumTableModel, Integer>() {
+            public boolean include(Entry<? extends AlbumTableModel, ? extends Integer> entry) {
+                return filterMatches.get(albumModel.storeRow(entry.getIdentifier()));
+            }
+        });
+        albumData.setRowSorter(sorter);
+
+    } // end of filter()
+
+    /*******************************************************
+     * Function: search()                                  *
+     * Purpose: Runs the search field through the index and*
+     *          shows the category counts of the result.   *
+     * Argument: none                                      *
+     * Return: none void                                   *
+     */
+
+    private void search()
+    {
+        long start = System.nanoTime();
+        AlbumSearchIndex index = albumModel.getIndex();
+        filterMatches = index.search(filterField.getText());
+        Map<String, Integer> facets = index.facets(filterMatches);
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+
+        // e.g. "12 albums (85 us)  Pop 7  Rock 5"
+        StringBuilder text = new StringBuilder();
+        text.append(filterMatches.cardinality()).append(" albums (").append(micros).append(" \u00b5s)");
+        for (Map.Entry<String, Integer> facet : facets.entrySet())
+        {
+            text.append("  ").append(facet.getKey()).append(' ').append(facet.getValue());
+        }
+        facetLabel.setText(text.toString());
+
+    } // end of search()
+
     /*****************************************************
      * Function: setTime()                               *
      * Purpose: this method is for the timer to display  *
@@ -188,17 +428,121 @@ public class XMLDownloadPanel extends JPanel {
 
     /********************************************************
      * Function: displayData()                              *
-     * Purpose: To display the information in the text area *
-     * @param album                                         *
+     * Purpose: To apply a batch of album changes to the    *
+     *          table. The whole batch is one model change, *
+     *          so the EDT time does not grow with the rows *
+     *          shown. Changes of a cancelled download are   *
+     *          ignored. Feeds with changes but no FINISHED *
+     *          yet are noted, so a cancel can undo them.   *
+     * @param generation the number of the download        *
+     * @param changes                                       *
      * Return: none void                                    *
      */
 
-    public void displayData (Album album)
+    public void displayData (int generation, List<AlbumChange> changes)
     {
-        // concatenate the information and store it in line
-        String line = album.getAlbumName() + "; " + album.getSingerName() + "; " + album.getMusicType() + "\n";
-        albumData.append(line);   // append each line in the text area
+        if (generation != this.generation)
+        {
+            return;
+        }
+        albumModel.apply(changes);   // only the rows that differ are touched
+        for (AlbumChange change : changes)
+        {
+            if (change.getKind() == AlbumChange.Kind.FINISHED)
+            {
+                unfinished.remove(change.getFeed());
+            }
+            else
+            {
+                unfinished.add(change.getFeed());
+            }
+        }
 
     } // end of displayData()
 
+    /********************************************************
+     * Function: displayReport()                            *
+     * Purpose: To show how long a download took in total,  *
+     *          how long its slowest feed took and how much  *
+     *          compression saved. The tool tip has the time *
+     *          and bytes of every feed and the statistics of*
+     *          the shared client, album cache and parser    *
+     *          pool. If feeds failed, the first reason is   *
+     *          shown in red and the tool tip lists every    *
+     *          failed feed first. A problem that lost no    *
+     *          albums is shown the same way.                *
+     * @param generation the number of the download        *
+     * @param results                                       *
+     * @param totalNanos                                    *
+     * @param warning what else went wrong, or null         *
+     * Return: none void                                    *
+     */
+
+    public void displayReport(int generation, List<FeedFetchEngine.FeedResult> results, long totalNanos,
+                              String warning)
+    {
+        if (generation != this.generation)
+        {
+            return;     // a newer download is running
+        }
+
+        long slowest = 0;    // the longest single feed
+        int failed = 0;      // feeds that did not download
+        long wireBytes = 0;  // bytes received, and the size of the feeds they unpacked to
+        long bytes = 0;
+        String reason = null;
+        StringBuilder reasons = new StringBuilder();
+        StringBuilder feeds = new StringBuilder();
+
+        for (FeedFetchEngine.FeedResult result : results)
+        {
+            slowest = Math.max(slowest, result.getNanos());
+            wireBytes += result.getWireBytes();
+            bytes += result.getBytes();
+            feeds.append(String.format("%d ms, %d albums, %d / %d bytes: %s<br>",
+                    TimeUnit.NANOSECONDS.toMillis(result.getNanos()), result.getAlbums().size(),
+                    result.getWireBytes(), result.getBytes(), result.getFeed()));
+            if (result.getError() != null)
+            {
+                failed++;
+                String message = result.getError().getMessage() != null ? result.getError().getMessage()
+                        : result.getError().getClass().getSimpleName();
+                if (reason == null)
+                {
+                    reason = message;
+                }
+                reasons.append(result.getFeed()).append(": ").append(message).append("<br>");
+            }
+        }
+        if (warning != null)
+        {
+            reason = reason != null ? reason : warning;
+            reasons.append(warning).append("<br>");
+        }
+
+        report(String.format("%d feeds in %d ms (slowest %d ms, %d failed, %.0f%% saved by compression)",
+                results.size(), TimeUnit.NANOSECONDS.toMillis(totalNanos), TimeUnit.NANOSECONDS.toMillis(slowest),
+                failed, bytes == 0 ? 0.0 : 100.0 * (bytes - wireBytes) / bytes));
+
+        // tell the user why feeds are missing instead of leaving the table empty
+        if (reason != null)
+        {
+            reportLabel.setText(reportLabel.getText() + ": " + reason);
+            reportLabel.setForeground(Color.RED);
+            reasons.append("<br>");
+        }
+        reportLabel.setToolTipText("<html>" + reasons + feeds + "<br>HTTP client: " + FeedHttpClient.getShared()
+                + "<br>album cache: " + AlbumCache.getShared() + "<br>parsers: " + SAXParserPool.getShared()
+                + "</html>");
+
+    } // end of displayReport()
+
+    // show a message in the report label, without the colour and tool tip of an earlier failure
+    private void report(String text)
+    {
+        reportLabel.setText(text);
+        reportLabel.setForeground(reportColor);
+        reportLabel.setToolTipText(null);
+    }
+
 } // end of the class XMLDownloadPanel()
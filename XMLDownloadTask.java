@@ -3,293 +3,227 @@
  *                                                        *
  * Author: Zubaidah Alqaisi                               *
  *                                                        *
- * Private members: StringUrl, downloadPanel.             *
- * Protected members: process()                           *
+ * Private members: feeds, previous, diffs, engine,       *
+ *                  downloadPanel, generation,            *
+ *                  results, totalNanos, historyError.    *
+ * Protected members: process(), done()                   *
  *                                                        *
  * Public members: XMLDownloadTask(), doInBackgorund(),   *
  *                                                        *
  * Purpose:This is a subclass of SwingWorker that is used *
  *       to download the XML data in a background thread. *
- *       This class may add the published Album objects to*
- *       the text area in the parent class one at a time, *
- *       and/or add them to an ArrayList and return the   *
- *       list when the task is complete so that they can  *
- *       be displayed all at once.                        *
+ *       The feeds are handed to the FeedFetchEngine, which*
+ *       downloads them in parallel. Every album is       *
+ *       compared with what the panel shows for its feed  *
+ *       and only the differences are published, as they  *
+ *       are parsed, so the table in the parent class only*
+ *       changes the rows that differ. A feed that fails  *
+ *       halfway publishes the changes that undo its own, *
+ *       so it keeps its old rows.                        *
+ *       The merged list is returned when the task is     *
+ *       complete, and the albums of every feed are       *
+ *       saved to the CatalogSnapshot for the next start. *
+ *       Their ranks are appended to the AlbumHistory.    *
+ *       cancel(true) stops every feed at once; the chunks*
+ *       a cancelled task still publishes carry its       *
+ *       generation, which the panel no longer shows.     *
  *********************************************************/
 
-import org.xml.sax.Attributes;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
-import org.xml.sax.helpers.DefaultHandler;
 import javax.swing.*;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
-import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.MalformedURLException;
-import java.net.ProtocolException;
-import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
-public class XMLDownloadTask extends SwingWorker<List<Album>, Album> {
+public class XMLDownloadTask extends SwingWorker<List<Album>, AlbumChange> {
 
     // creating instance variables
-    private String StringUrl;
+    private List<FeedKey> feeds;
+    private Map<FeedKey, List<Album>> previous;
+    private Map<FeedKey, FeedDiff> diffs = new HashMap<FeedKey, FeedDiff>();
+    private FeedFetchEngine engine;
     private XMLDownloadPanel downloadPanel;
+    private int generation;                 // which download of the panel this is
+
+    // per-feed results and the total wall-clock time, filled in by doInBackground()
+    private List<FeedFetchEngine.FeedResult> results = new ArrayList<FeedFetchEngine.FeedResult>();
+    private long totalNanos;
+    private String historyError;            // why the album history was not written, null if it was
 
     /*****************************************************
      * Function: XMLDownloadTask ()                      *
      * Purpose: This is the constructor of the class     *
-     * @param url                                        *
+     * @param feeds                                      *
+     * @param previous the albums the panel shows for    *
+     *        each feed                                  *
+     * @param engine                                     *
      * @param downloadPanel                              *
+     * @param generation the number the panel gave this   *
+     *        download                                   *
      * Return: none
      */
 
-    public XMLDownloadTask(String url, XMLDownloadPanel downloadPanel)
+    public XMLDownloadTask(List<FeedKey> feeds, Map<FeedKey, List<Album>> previous, FeedFetchEngine engine,
+                           XMLDownloadPanel downloadPanel, int generation)
     {
-        // setting the default values of url and downloadPanel
-        StringUrl = url;
+        // setting the default values of the feeds, engine and downloadPanel
+        this.feeds = feeds;
+        this.previous = previous;
+        for (FeedKey feed : feeds)
+        {
+            List<Album> shown = previous.get(feed);
+            diffs.put(feed, new FeedDiff(feed, shown != null ? shown : new ArrayList<Album>()));
+        }
+        this.engine = engine;
         this.downloadPanel = downloadPanel;
+        this.generation = generation;
 
     } // end of XMLDownloadTask()
 
     /*******************************************************
      * Function: doInBackground()                          *
-     * Porpuse: Downloads the XML data as a string, creates*
-     *          a SAX parser, creates an instance of the   *
-     *          AlbumHandler class to handle SAX parse     *
-     *          events, and parses the XML. It will then   *
-     *          publish the new album.                     *
+     * Porpuse: Hands every feed to the fetch engine,      *
+     *          compares each album with the last download *
+     *          of its feed as soon as it is parsed and    *
+     *          publishes the difference, undoes the       *
+     *          differences of a feed that fails, and      *
+     *          merges the results in the order the feeds  *
+     *          were requested. Nothing is published or    *
+     *          saved once the task is cancelled.          *
      * Arguments: none                                     *
      * @return: list of albums                             *
      */
 
     public List<Album> doInBackground()
     {
-        // creating instance of the string builder class
-        StringBuilder page = new StringBuilder();
-
-        // create the actual connection to a website
-        HttpURLConnection httpUrl = null;
+        // the merged albums of every feed
+        List<Album> albums = new ArrayList<Album>();
 
+        long start = System.nanoTime();
         try {
-            // create instance of the URL class and pass the string url to it
-            URL url = new URL(StringUrl);
-            //create a connection
-            httpUrl = (HttpURLConnection) url.openConnection();
-
-            httpUrl.setRequestMethod("GET"); // set the connection type
-
-            // if it is connected or if connection is available
-            if ( httpUrl.getResponseCode() == HttpURLConnection.HTTP_OK)
-            {
-                // connect the connection to buffer and starting pulling data into the buffer
-                BufferedReader buffer = new BufferedReader(new InputStreamReader(httpUrl.getInputStream()));
-
-                // read individual line from buffer and store into line
-                String line = buffer.readLine();  // read first line prime read
-
-                //while loop to read the XML
-                while (line != null )
-                {
-                    // taking the line read and add it to the page
-                    page.append(line);
-                    // getting next line
-                    line = buffer.readLine(); // second read
-
-                } // end of while
-
-                // converting the string builder to string
-                String xmlString = page.toString();
-
-                // creating the parser
-                SAXParserFactory factory = SAXParserFactory.newInstance();
-                SAXParser parser = factory.newSAXParser();
-
-                //parse the page. Parse take two requirments: input source and  handler to handel tasks
-                parser.parse(new InputSource(new ByteArrayInputStream(xmlString.getBytes("utf-8"))), new AlbumHandler());
-
-            }// end of if
-
-        } // end of try
-        // catch blocks to catch many exceptions
-        catch (MalformedURLException e)
-        {
-            System.out.println("Bad Url.");
-        }
-        catch (ProtocolException e)
-        {
-            System.out.println(e.getMessage());
+            results = engine.fetchAll(feeds, new FeedFetchEngine.FeedListener() {
+                // each feed is read by one worker, so its FeedDiff is only used by that thread
+                public void albumFound(FeedKey feed, Album album) {
+                    if (!isCancelled())
+                    {
+                        diffs.get(feed).next(album, change -> publish(change));    // publish is thread safe
+                    }
+                }
+
+                public void feedFinished(FeedFetchEngine.FeedResult result) {
+                    // a feed that failed goes back to its old albums, the report tells the user why; the panel
+                    // undoes a cancelled download itself
+                    if (isCancelled())
+                    {
+                        return;
+                    }
+                    if (result.getError() == null)
+                    {
+                        diffs.get(result.getFeed()).finish(change -> publish(change));
+                    }
+                    else
+                    {
+                        diffs.get(result.getFeed()).restore(change -> publish(change));
+                    }
+                }
+            });
         }
-        catch ( IOException e)
+        catch (InterruptedException e)
         {
-            System.out.println(e.getMessage());
+            return albums;
         }
-        catch (ParserConfigurationException e)
+        totalNanos = System.nanoTime() - start;
+
+        // cancelled after the last feed finished, the panel has moved on
+        if (isCancelled())
         {
-            System.out.println(e.getMessage());
+            return albums;
         }
-        catch ( SAXException e)
+
+        // merge the albums and keep every feed that downloaded in the album cache; done() reports the times
+        Map<FeedKey, List<Album>> catalog = new LinkedHashMap<FeedKey, List<Album>>();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < results.size(); i++)
         {
-            System.out.println(e.getMessage());
+            FeedFetchEngine.FeedResult result = results.get(i);
+            albums.addAll(result.getAlbums());
+            if (result.getError() == null && !result.getAlbums().isEmpty())
+            {
+                AlbumCache.getShared().put(feeds.get(i), result.getAlbums());
+                catalog.put(feeds.get(i), result.getAlbums());
+                appendHistory(feeds.get(i), now, result.getAlbums());
+            }
+            else if (previous.get(feeds.get(i)) != null)
+            {
+                catalog.put(feeds.get(i), previous.get(feeds.get(i)));    // the table still shows these
+            }
         }
 
-        return null;
+        // the table now shows these feeds, keep them for the next start
+        CatalogSnapshot.getShared().save(catalog);
+
+        return albums;
 
     } // end of doInBackground()
 
+    // keep the ranks of a download in the album history, a failure only loses the history; a compaction that
+    // failed on the history's own thread is reported the same way
+    private void appendHistory(FeedKey feed, long time, List<Album> albums)
+    {
+        try {
+            AlbumHistory history = AlbumHistory.getShared();
+            history.append(feed, time, albums);
+            if (history.getCompactFailure() != null)
+            {
+                historyError = history.getCompactFailure();
+            }
+        }
+        catch (IOException e)
+        {
+            historyError = "album history not written: " + e.getMessage();
+        }
+    }
+
     /*****************************************************
      * Function: process ()                              *
-     * Purpose: Processes a List of Album objects that   *
-     *         have been published by the AlbumHandler   *
-     *         class.                                    *
+     * Purpose: Processes a List of AlbumChange objects  *
+     *         that have been published for the albums   *
+     *         the AlbumHandler found.                   *
      * @param chunks                                     *
      * Return: none void                                 *
      */
 
     @Override
-    protected void process(List<Album> chunks) {
+    protected void process(List<AlbumChange> chunks) {
 
-        // foreach loop to loop through the list of albums
-        for (Album album: chunks)
-        {
-            // calling a public function to display the data in the text area
-            downloadPanel.displayData(album);
-        }
+        // calling a public function to add the whole chunk to the table at once
+        downloadPanel.displayData(generation, chunks);
 
     } // end of process()
 
-    /**********************************************************
-     * Class: AlbumHandler                                    *
-     *                                                        *
-     * Author: Zubaidah Alqaisi                               *
-     *                                                        *
-     * Private members: title, artist, category, sTitle,      *
-     *                  sArtist, sCategory.                   *
-     * Protected members: process()                           *
-     *                                                        *
-     * Public members: startElement(), endElement(),          *
-     *                 characters().                          *
-     *                                                        *
-     * Purpose: This is a subclass of DefaultHandler. It  is  *
-     *          an inner class of the XMLDownloadTask, since  *
-     *          that will give its methods direct access to   *
-     *        the methods and data members of the outer class.*
-     *        It handles information from the parser.         *
-     *********************************************************/
-
-    public class AlbumHandler extends DefaultHandler {
-
-        // craeting boolean data members
-        private boolean title = false;
-        private boolean artist = false;
-        private boolean category = false;
-
-        // data members of the AlbumHandler class
-        private String sTitle;
-        private String sArtist;
-        private String sCategory;
-
-        /*******************************************************
-         * Function: startElement()                            *
-         * Purpose: handle various events that occur as the XML*
-         *         is parsed like open tags.                   *
-         * @param uri                                          *
-         * @param localName                                    *
-         * @param qName                                        *
-         * @param attributes                                   *
-         * @throws SAXException                                *
-         * Return: none void                                   *
-         */
-
-        @Override
-        public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
-
-            //if the open tag is im:name
-            if (qName.equalsIgnoreCase("im:name")) {
-
-                title = true;     // set the title boolean equal to true means found it and between the two tags
-                sTitle = "";      // set the title string equal empty string to start a new title
-            }
-            // if the open tag is im:artist
-            if (qName.equalsIgnoreCase("im:artist")) {
-
-                artist = true; // set the boolean data member to true
-                sArtist = "";     // set the string to empty to start a new artist
-            }
-            // if the open tag is entry
-            if (qName.equalsIgnoreCase("entry") )
-            {
-                category = true;    // it is found so set the boolean to true
-            }
-            // if the open tag is category
-            if (qName.equalsIgnoreCase("category") && category)
-            {
-                sCategory = attributes.getValue("label");   // get the label tag in the category tag only
-                category = false;     // found so set it equal to false because there is no ending tag for category
-            }
-        }// end of startElement()
-
-        /*******************************************************
-         * Function: endElement()                              *
-         * Purpose: handle various events that occur as the XML*
-         *          is parsed like closing tags.               *
-         * @param uri                                          *
-         * @param localName                                    *
-         * @param qName                                        *
-         * @throws SAXException                                *
-         * Return: none void                                   *
-         */
-
-        @Override
-        public void endElement(String uri, String localName, String qName) throws SAXException {
-
-            // if the ending tag is im:name
-            if (qName.equalsIgnoreCase("im:name")) {
-
-                title = false;   // set the boolean to false
-            }
-            // if the ending tag is im:artist
-            if (qName.equalsIgnoreCase("im:artist")) {
-
-                artist = false;          // set the boolean to false
-            }
-            // if the ending tag is entry
-            if (qName.equalsIgnoreCase("entry") )
-            {
-                Album album = new Album(sTitle, sArtist, sCategory); // create instance of the Album class and pass the string data member to it
-                publish(album);    // publish the album
-            }
-
-        } // end of endElement ()
-
-
-        /******************************************************
-         * Function: characters()                             *
-         * Purpose: To read the characters from the parser.   *
-         * @param ch                                          *
-         * @param start                                       *
-         * @param length                                      *
-         * @throws SAXException                               *
-         * Return: none void                                  *
-         */
-
-        @Override
-        public void characters(char[] ch, int start, int length) throws SAXException {
+    /*****************************************************
+     * Function: done ()                                 *
+     * Purpose: Shows the fetch report once every feed   *
+     *          has finished, with any album history or   *
+     *          catalog snapshot that was not written.    *
+     * Arguments: none                                   *
+     * Return: none void                                 *
+     */
 
-            // if it is in between the tags, take the current characters found and add them to the string
-            if (title)
-                sTitle = sTitle + new String(ch, start, length);
+    @Override
+    protected void done() {
 
-            // if it is in between the tags, take the current characters found and add them to the string
-            if (artist)
-                sArtist = sArtist + new String(ch, start, length);
+        if (!isCancelled())
+        {
+            // the snapshot of this download is still being written, so this is the last one that finished
+            String snapshotError = CatalogSnapshot.getShared().getFailure();
+            String warning = historyError == null ? snapshotError
+                    : snapshotError == null ? historyError : historyError + "; " + snapshotError;
+            downloadPanel.displayReport(generation, results, totalNanos, warning);
         }
-    } // end of character()
 
+    } // end of done()
 
-}// end of the class AlbumHandler
+}// end of the class XMLDownloadTask
@@ -25,6 +25,8 @@ import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
+import java.util.List;
+import java.util.Map;
 
 public class XMLDownloader extends JFrame implements ActionListener {
 
@@ -37,9 +39,13 @@ public class XMLDownloader extends JFrame implements ActionListener {
     // main method just to invoke the GUI and run it on a seperate thread
     public static void main(String [] arg)
     {
-        // run the gui in a seperate thread
+        // read the albums of the last session while the GUI thread starts up
+        Map<FeedKey, List<Album>> catalog = CatalogSnapshot.getShared().load();
+
+        // run the gui in a seperate thread, showing the snapshot before anything is downloaded
         EventQueue.invokeLater(() -> {
-            XMLDownloader downloader = new XMLDownloader(); } );
+            XMLDownloader downloader = new XMLDownloader();
+            downloader.downloadPanel.showSnapshot(catalog); } );
 
     }
 
@@ -103,16 +109,19 @@ public class XMLDownloader extends JFrame implements ActionListener {
         JMenu type = new JMenu("Type");
         JMenu limit = new JMenu("Limit");
         JMenu explicit = new JMenu("Explicit");
+        JMenu parser = new JMenu("Parser");
 
         // the the menu items to the menu bar
         menuBar.add(type);
         menuBar.add(limit);
         menuBar.add(explicit);
+        menuBar.add(parser);
 
         // create a button group
         ButtonGroup buttonGroupType = new ButtonGroup();
         ButtonGroup buttonGroupLimit = new ButtonGroup();
         ButtonGroup buttonGroupExplicit = new ButtonGroup();
+        ButtonGroup buttonGroupParser = new ButtonGroup();
 
         // create radio buttons for the type menu item
         JRadioButtonMenuItem rbMenuItemType1 = new JRadioButtonMenuItem("New Music");
@@ -129,6 +138,10 @@ public class XMLDownloader extends JFrame implements ActionListener {
         JRadioButtonMenuItem rbMenuItemExiplicit1 = new JRadioButtonMenuItem("Yes");
         JRadioButtonMenuItem rbMenuItemExiplicit2 = new JRadioButtonMenuItem("No");
 
+        // create radio buttons for the parser menu item
+        JRadioButtonMenuItem rbMenuItemParser1 = new JRadioButtonMenuItem("SAX");
+        JRadioButtonMenuItem rbMenuItemParser2 = new JRadioButtonMenuItem("StAX");
+
         // adding the menu items to the menu group
         buttonGroupType.add(rbMenuItemType1);
         buttonGroupType.add(rbMenuItemType2);
@@ -142,6 +155,9 @@ public class XMLDownloader extends JFrame implements ActionListener {
         buttonGroupExplicit.add(rbMenuItemExiplicit1);
         buttonGroupExplicit.add(rbMenuItemExiplicit2);
 
+        buttonGroupParser.add(rbMenuItemParser1);
+        buttonGroupParser.add(rbMenuItemParser2);
+
         //add the group to the menu item
         type.add(rbMenuItemType1);
         type.add(rbMenuItemType2);
@@ -155,6 +171,9 @@ public class XMLDownloader extends JFrame implements ActionListener {
         explicit.add(rbMenuItemExiplicit1);
         explicit.add(rbMenuItemExiplicit2);
 
+        parser.add(rbMenuItemParser1);
+        parser.add(rbMenuItemParser2);
+
         // add the menu bar to JMenuBar
         setJMenuBar(menuBar);
 
@@ -163,6 +182,8 @@ public class XMLDownloader extends JFrame implements ActionListener {
 
         rbMenuItemLimit1.setSelected(true);
         rbMenuItemExiplicit1.setSelected(true);
+        rbMenuItemParser1.setSelected(FeedReader.getBackend() == FeedReader.Backend.SAX);
+        rbMenuItemParser2.setSelected(FeedReader.getBackend() == FeedReader.Backend.STAX);
 
         // action listeners for type, limit, and explicit
         rbMenuItemType1.addActionListener(this);
@@ -179,6 +200,9 @@ public class XMLDownloader extends JFrame implements ActionListener {
         rbMenuItemExiplicit1.addActionListener(this);
         rbMenuItemExiplicit2.addActionListener(this);
 
+        rbMenuItemParser1.addActionListener(this);
+        rbMenuItemParser2.addActionListener(this);
+
         // setting the accelerator for the type buttons
         rbMenuItemType1.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_N,
                 Toolkit.getDefaultToolkit().getMenuShortcutKeyMask()));
@@ -198,6 +222,9 @@ public class XMLDownloader extends JFrame implements ActionListener {
         // setting the tool tip for the explicit menu
         explicit.setToolTipText("Explicit or Not");
 
+        // setting the tool tip for the parser menu
+        parser.setToolTipText("Parser used to read the feed");
+
 
     }
 
@@ -252,6 +279,24 @@ public class XMLDownloader extends JFrame implements ActionListener {
         {
             downloadPanel.setExplicit(false);
         }
+
+        if (event.getActionCommand() == "SAX")
+        {
+            FeedReader.setBackend(FeedReader.Backend.SAX);
+        }
+        if (event.getActionCommand() == "StAX")
+        {
+            FeedReader.setBackend(FeedReader.Backend.STAX);
+        }
+
+        // a download of the feed that was selected before is no longer wanted
+        if (event.getActionCommand() != "SAX" && event.getActionCommand() != "StAX")
+        {
+            downloadPanel.cancelDownload();
+        }
+
+        // show the newly selected feed at once if it was downloaded before
+        downloadPanel.showCached();
     } // end of the actionPerformed() method
 
 